@@ -0,0 +1,137 @@
+package com.minesweeper;
+/**
+ * Static helpers for plain long[] bitsets: bit i is bit (i % 64) of word i / 64.
+ * Unlike java.util.BitSet the words are exposed directly, so callers can combine
+ * whole bitsets with word-parallel operations.
+ */
+public final class Bits {
+
+	/**
+	 * No instances.
+	 */
+	private Bits(){ }
+
+	/**
+	 * Number of words needed for a bitset of the given size.
+	 * @param size number of bits.
+	 * @return number of longs.
+	 */
+	public static int words(int size){
+		return (size + 63) >>> 6;
+	}
+
+	/**
+	 * Set a bit, O(1).
+	 * @param bits the bitset.
+	 * @param i bit index.
+	 */
+	public static void set(long[] bits, int i){
+		bits[i >>> 6] |= 1L << i;
+	}
+
+	/**
+	 * Clear a bit, O(1).
+	 * @param bits the bitset.
+	 * @param i bit index.
+	 */
+	public static void clear(long[] bits, int i){
+		bits[i >>> 6] &= ~(1L << i);
+	}
+
+	/**
+	 * Read a bit, O(1).
+	 * @param bits the bitset.
+	 * @param i bit index.
+	 * @return true if the bit is set.
+	 */
+	public static boolean get(long[] bits, int i){
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Number of set bits, O(words).
+	 * @param bits the bitset.
+	 * @return population count.
+	 */
+	public static int count(long[] bits){
+		int n = 0;
+		for(long w : bits){
+			n += Long.bitCount(w);
+		}
+		return n;
+	}
+
+	/**
+	 * Copy length bits from src, starting at bit from, to dst starting at bit to, O(length / 64).
+	 * The other bits of dst are kept.
+	 * @param src source bitset.
+	 * @param from first source bit.
+	 * @param dst destination bitset, not src.
+	 * @param to first destination bit.
+	 * @param length number of bits.
+	 */
+	public static void copy(long[] src, int from, long[] dst, int to, int length){
+		for(int done = 0; done < length; ){
+			int s = from + done;
+			int d = to + done;
+			int n = Math.min(length - done, 64 - (d & 63)); // Bits left in the destination word
+			long word = src[s >>> 6] >>> s;
+			if((s & 63) != 0 && (s >>> 6) + 1 < src.length){
+				word |= src[(s >>> 6) + 1] << -s;
+			}
+			long mask = n == 64 ? -1L : (1L << n) - 1;
+			dst[d >>> 6] = dst[d >>> 6] & ~(mask << d) | (word & mask) << d;
+			done += n;
+		}
+	}
+
+	/**
+	 * Index of the first set bit at or after from, skipping whole zero words.
+	 * @param bits the bitset.
+	 * @param from first index to look at.
+	 * @param size number of valid bits.
+	 * @return index of the set bit, -1 if there is none.
+	 */
+	public static int nextSet(long[] bits, int from, int size){
+		if(from < 0 || from >= size){
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = bits[w] & (-1L << from);
+		while(true){
+			if(word != 0){
+				int i = (w << 6) + Long.numberOfTrailingZeros(word);
+				return i < size ? i : -1;
+			}
+			if(++w == bits.length || w << 6 >= size){ // Nothing left below size
+				return -1;
+			}
+			word = bits[w];
+		}
+	}
+
+	/**
+	 * Index of the first clear bit at or after from, skipping whole full words.
+	 * @param bits the bitset.
+	 * @param from first index to look at.
+	 * @param size number of valid bits.
+	 * @return index of the clear bit, -1 if there is none.
+	 */
+	public static int nextClear(long[] bits, int from, int size){
+		if(from < 0 || from >= size){
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = ~bits[w] & (-1L << from);
+		while(true){
+			if(word != 0){
+				int i = (w << 6) + Long.numberOfTrailingZeros(word);
+				return i < size ? i : -1;
+			}
+			if(++w == bits.length || w << 6 >= size){ // Nothing left below size
+				return -1;
+			}
+			word = ~bits[w];
+		}
+	}
+}
@@ -0,0 +1,403 @@
+package com.minesweeper;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+/**
+ * Computes difficulty metrics of generated boards: 3BV, openings, isolated number cells,
+ * mine density by region and how often a simple solver gets stuck (its guess count).
+ * Works on the primitive BoardLayout, padded with a border like MineSweeper so that
+ * neighbour loops need no bounds checks. An analyzer reuses its scratch arrays between
+ * boards and is not thread-safe; analyzeSeeds() gives each parallel task its own.
+ */
+public class BoardAnalyzer {
+
+	/**
+	 * Chunks of seeds per core in analyzeSeeds(), so that uneven chunks still balance.
+	 */
+	private static final int CHUNKS_PER_CORE = 4;
+	/**
+	 * Count stored for border cells.
+	 */
+	private static final byte BORDER = -2;
+	/**
+	 * Solver state: cell hidden.
+	 */
+	private static final byte HIDDEN = 0;
+	/**
+	 * Solver state: cell open.
+	 */
+	private static final byte OPEN = 1;
+	/**
+	 * Solver state: cell flagged.
+	 */
+	private static final byte FLAG = 2;
+
+	/**
+	 * Number of regions along each side of the board.
+	 */
+	private final int regionsPerSide;
+	/**
+	 * Padded counts, BORDER on the border.
+	 */
+	private byte[] cnt = new byte[0];
+	/**
+	 * Union-find parents of 0-count cells.
+	 */
+	private int[] parent = new int[0];
+	/**
+	 * Whether a cell is next to a 0-count cell.
+	 */
+	private boolean[] bordered = new boolean[0];
+	/**
+	 * Solver cell states.
+	 */
+	private byte[] state = new byte[0];
+	/**
+	 * Solver: number of hidden neighbours of each cell.
+	 */
+	private byte[] hiddenNbrs = new byte[0];
+	/**
+	 * Solver: number of flagged neighbours of each cell.
+	 */
+	private byte[] flagNbrs = new byte[0];
+	/**
+	 * Solver: 1 for an open number cell, 0 otherwise.
+	 */
+	private byte[] openNumber = new byte[0];
+	/**
+	 * Solver: 1 for a cell in the queue, 0 otherwise.
+	 */
+	private byte[] queued = new byte[0];
+	/**
+	 * Solver queue (ring buffer, power of two long) of open number cells to re-check.
+	 */
+	private int[] queue = new int[0];
+	/**
+	 * Queue head and tail, as running counts.
+	 */
+	private int head, tail;
+	/**
+	 * Stack for flood-opening 0-count cells.
+	 */
+	private int[] stack = new int[0];
+	/**
+	 * Neighbour offsets for the current stride.
+	 */
+	private int[] offsets;
+
+	/**
+	 * Constructor.
+	 * @param regionsPerSide number of regions along each side for mine density, at least 1.
+	 */
+	public BoardAnalyzer(int regionsPerSide){
+		if(regionsPerSide < 1){
+			throw new IllegalArgumentException("Need at least one region!");
+		}
+		this.regionsPerSide = regionsPerSide;
+	}
+
+	/**
+	 * Analyze every seed of a pre-defined level, in parallel across cores.
+	 * The seeds are cut into a few chunks per core; each chunk task uses its own analyzer,
+	 * which is dropped with the task, so nothing stays attached to the pool threads.
+	 * @param seeds seeds to analyze.
+	 * @param level difficulty level.
+	 * @param regionsPerSide number of regions along each side for mine density.
+	 * @return one result per seed, in the same order.
+	 */
+	public static BoardStats[] analyzeSeeds(int[] seeds, MineSweeper.Level level, int regionsPerSide){
+		if(regionsPerSide < 1){
+			throw new IllegalArgumentException("Need at least one region!");
+		}
+		BoardStats[] out = new BoardStats[seeds.length];
+		int chunks = Math.min(seeds.length, ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_CORE);
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			BoardAnalyzer analyzer = new BoardAnalyzer(regionsPerSide);
+			int end = (int)((long)seeds.length * (chunk + 1) / chunks);
+			for(int i = (int)((long)seeds.length * chunk / chunks); i < end; ++i){
+				out[i] = analyzer.analyze(BoardLayout.generate(seeds[i], level), seeds[i]);
+			}
+		});
+		return out;
+	}
+
+	/**
+	 * Analyze the board of a game (its current visible state is ignored).
+	 * @param game the game, on the SQUARE topology.
+	 * @return the metrics, with seed 0.
+	 */
+	public BoardStats analyze(MineSweeper game){
+		if(game != null && game.getTopology() != Topology.SQUARE){
+			throw new IllegalArgumentException("Only SQUARE boards can be analyzed!");
+		}
+		return analyze(BoardLayout.of(game), 0);
+	}
+
+	/**
+	 * Analyze a board layout. One linear pass computes openings, 3BV, isolated cells and
+	 * density; the solver then runs once over the board.
+	 * @param layout the board layout.
+	 * @param seed seed to report in the result.
+	 * @return the metrics.
+	 */
+	public BoardStats analyze(BoardLayout layout, int seed){
+		int rows = layout.rowCount();
+		int cols = layout.colCount();
+		prepare(layout);
+		int stride = cols + 2;
+		
+		int openings = 0; // Each 0-count cell starts one, each join ends one
+		int[] regionMines = new int[regionsPerSide * regionsPerSide];
+		int[] regionCells = new int[regionMines.length];
+		int[] colRegion = new int[cols]; // Region column of each column, saves a division per cell
+		for(int col = 0; col < cols; ++col){
+			colRegion[col] = (int)((long)col * regionsPerSide / cols);
+		}
+		for(int row = 0; row < rows; ++row){
+			int regionRow = (int)((long)row * regionsPerSide / rows) * regionsPerSide;
+			for(int col = 0; col < cols; ++col){
+				int p = (row + 1) * stride + col + 1;
+				int region = regionRow + colRegion[col];
+				regionCells[region]++;
+				byte v = cnt[p];
+				if(v == -1){
+					regionMines[region]++;
+				} else if(v == 0){
+					// Join the 0-count neighbours already scanned (left and the row above)
+					parent[p] = p;
+					openings++;
+					for(int k = 0; k < 4; ++k){
+						int n = p + offsets[k];
+						if(cnt[n] == 0){
+							openings -= union(p, n);
+						}
+					}
+					for(int off : offsets){
+						bordered[p + off] = true;
+					}
+				}
+			}
+		}
+		
+		int isolated = 0;
+		for(int row = 0; row < rows; ++row){
+			for(int p = (row + 1) * stride + 1, end = p + cols; p < end; ++p){
+				if(cnt[p] > 0 && !bordered[p]){
+					isolated++;
+				}
+			}
+		}
+		
+		double[] density = new double[regionMines.length];
+		for(int i = 0; i < density.length; ++i){
+			density[i] = regionCells[i] == 0 ? 0 : (double)regionMines[i] / regionCells[i];
+		}
+		return new BoardStats(seed, openings + isolated, openings, isolated,
+			solve(rows, cols, layout.mineCount()), density);
+	}
+
+	/**
+	 * Size the scratch arrays and copy the counts into the padded plane.
+	 * @param layout the board layout.
+	 */
+	private void prepare(BoardLayout layout){
+		int rows = layout.rowCount();
+		int cols = layout.colCount();
+		int stride = cols + 2;
+		int size = (rows + 2) * stride;
+		if(cnt.length < size){
+			cnt = new byte[size];
+			parent = new int[size];
+			bordered = new boolean[size];
+			state = new byte[size];
+			hiddenNbrs = new byte[size];
+			flagNbrs = new byte[size];
+			openNumber = new byte[size];
+			queued = new byte[size];
+			queue = new int[Integer.highestOneBit(size) << 1];
+			stack = new int[size];
+		}
+		// Scanned neighbours (left, above) first: the union pass only looks at offsets[0..3]
+		offsets = new int[] {-1, -stride - 1, -stride, -stride + 1, 1, stride - 1, stride, stride + 1};
+		Arrays.fill(cnt, 0, size, BORDER);
+		Arrays.fill(bordered, 0, size, false);
+		Arrays.fill(queued, 0, size, (byte)0);
+		Arrays.fill(openNumber, 0, size, (byte)0);
+		Arrays.fill(state, 0, size, OPEN); // Border cells count as open
+		Arrays.fill(flagNbrs, 0, size, (byte)0);
+		byte[] counts = layout.counts();
+		for(int row = 0; row < rows; ++row){
+			int p = (row + 1) * stride + 1;
+			System.arraycopy(counts, row * cols, cnt, p, cols);
+			Arrays.fill(state, p, p + cols, HIDDEN);
+			// Every board cell starts hidden: a cell has (rows around) x (cols around) - 1 hidden neighbours
+			int rowsAround = 1 + (row > 0 ? 1 : 0) + (row < rows - 1 ? 1 : 0);
+			for(int col = 0; col < cols; ++col){
+				int colsAround = 1 + (col > 0 ? 1 : 0) + (col < cols - 1 ? 1 : 0);
+				hiddenNbrs[p + col] = (byte)(rowsAround * colsAround - 1);
+			}
+		}
+	}
+
+	/**
+	 * Union-find: root of a 0-count cell, with path halving.
+	 * @param p the cell.
+	 * @return its root.
+	 */
+	private int find(int p){
+		while(parent[p] != p){
+			parent[p] = parent[parent[p]];
+			p = parent[p];
+		}
+		return p;
+	}
+
+	/**
+	 * Union-find: join the openings of two 0-count cells.
+	 * @param a a cell.
+	 * @param b another cell.
+	 * @return 1 if two openings were joined, 0 if the cells were already in one.
+	 */
+	private int union(int a, int b){
+		int ra = find(a);
+		int rb = find(b);
+		if(ra == rb){
+			return 0;
+		}
+		parent[Math.max(ra, rb)] = Math.min(ra, rb);
+		return 1;
+	}
+
+	/**
+	 * Solve the board with single-cell deductions: a number with all its mines flagged
+	 * opens its other neighbours, a number with as many hidden neighbours as missing mines
+	 * flags them all. When stuck, the solver is handed a safe cell (it knows the mines), preferring a 0-count one.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param mines number of mines.
+	 * @return number of times stuck, the first click included.
+	 */
+	private int solve(int rows, int cols, int mines){
+		int stride = cols + 2;
+		int end = (rows + 1) * stride;
+		int safeLeft = rows * cols - mines;
+		int stuck = 0;
+		int zeroCursor = stride;
+		int anyCursor = stride;
+		head = 0;
+		tail = 0;
+		while(safeLeft > 0){
+			// Stuck: guess, preferring a 0-count cell
+			while(zeroCursor < end && (state[zeroCursor] != HIDDEN || cnt[zeroCursor] != 0)){
+				zeroCursor++;
+			}
+			int guess = zeroCursor;
+			if(guess == end){
+				while(state[anyCursor] != HIDDEN || cnt[anyCursor] < 0){
+					anyCursor++;
+				}
+				guess = anyCursor;
+			}
+			stuck++;
+			safeLeft -= reveal(guess);
+			
+			// Deduce until stuck
+			while(head != tail){
+				int x = queue[head++ & (queue.length - 1)];
+				queued[x] = 0;
+				int hidden = hiddenNbrs[x]; // Kept up to date, so no neighbour scan per check
+				int need = cnt[x] - flagNbrs[x];
+				if(hidden == 0){
+					continue;
+				} else if(need == 0){
+					for(int off : offsets){
+						if(state[x + off] == HIDDEN){
+							safeLeft -= reveal(x + off);
+						}
+					}
+				} else if(need == hidden){
+					for(int off : offsets){
+						int y = x + off;
+						if(state[y] == HIDDEN){
+							state[y] = FLAG;
+							for(int o : offsets){
+								hiddenNbrs[y + o]--;
+								flagNbrs[y + o]++;
+							}
+							enqueueOpenNumbers(y);
+						}
+					}
+				}
+			}
+		}
+		return stuck;
+	}
+
+	/**
+	 * Open a safe cell, flooding 0-count regions, and queue the number cells affected.
+	 * @param p the cell.
+	 * @return number of cells opened.
+	 */
+	private int reveal(int p){
+		if(state[p] != HIDDEN){
+			return 0;
+		}
+		int opened = 0;
+		int top = 0;
+		state[p] = OPEN; // Cells are opened when pushed, so each is pushed once
+		stack[top++] = p;
+		while(top > 0){
+			int z = stack[--top];
+			opened++;
+			for(int off : offsets){
+				hiddenNbrs[z + off]--;
+			}
+			enqueueOpenNumbers(z);
+			if(cnt[z] == 0){
+				// Neighbours of a 0-count cell are never flagged, so their state is HIDDEN (push) or OPEN (skip)
+				for(int off : offsets){
+					int n = z + off;
+					stack[top] = n;
+					top += OPEN - state[n];
+					state[n] = OPEN;
+				}
+			} else {
+				openNumber[z] = 1;
+				enqueue(z);
+			}
+		}
+		return opened;
+	}
+
+	/**
+	 * Queue the open number cells around a cell whose state changed, unless they have no hidden neighbours left.
+	 * @param p the cell.
+	 */
+	private void enqueueOpenNumbers(int p){
+		for(int off : offsets){
+			int n = p + off;
+			enqueue(n, openNumber[n] & (-hiddenNbrs[n] >>> 31)); // Numbers with hidden cells left
+		}
+	}
+
+	/**
+	 * Queue a number cell for re-checking if it is not queued already.
+	 * @param p the cell.
+	 */
+	private void enqueue(int p){
+		enqueue(p, 1);
+	}
+
+	/**
+	 * Queue a cell if wanted and not queued already, without branching on the board: the slot at
+	 * the tail is always written, and only taken when the cell is added.
+	 * @param p the cell.
+	 * @param wanted 1 to queue the cell, 0 to leave it.
+	 */
+	private void enqueue(int p, int wanted){
+		int add = wanted & ~queued[p];
+		queue[tail & (queue.length - 1)] = p;
+		queued[p] |= add;
+		tail += add;
+	}
+}
@@ -0,0 +1,263 @@
+package com.minesweeper;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+/**
+ * Bounded, thread-safe LRU cache of generated board layouts keyed by (seed, level, size, mines).
+ * Boards are generated outside the lock, so a slow generation never blocks other lookups.
+ */
+public class BoardCache {
+
+	/**
+	 * Cache key.
+	 */
+	private static final class Key {
+		/**
+		 * Seed.
+		 */
+		private final int seed;
+		/**
+		 * Level.
+		 */
+		private final MineSweeper.Level level;
+		/**
+		 * Rows.
+		 */
+		private final int rows;
+		/**
+		 * Cols.
+		 */
+		private final int cols;
+		/**
+		 * Mines.
+		 */
+		private final int mines;
+
+		/**
+		 * Constructor.
+		 * @param seed seed.
+		 * @param level level.
+		 * @param rows rows.
+		 * @param cols cols.
+		 * @param mines mines.
+		 */
+		Key(int seed, MineSweeper.Level level, int rows, int cols, int mines){
+			this.seed = seed;
+			this.level = level;
+			this.rows = rows;
+			this.cols = cols;
+			this.mines = mines;
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(!(o instanceof Key)){
+				return false;
+			}
+			Key k = (Key)o;
+			return seed == k.seed && level == k.level && rows == k.rows && cols == k.cols && mines == k.mines;
+		}
+
+		@Override
+		public int hashCode(){
+			int h = seed;
+			h = 31 * h + level.hashCode();
+			h = 31 * h + rows;
+			h = 31 * h + cols;
+			return 31 * h + mines;
+		}
+	}
+
+	/**
+	 * Layouts in LRU order (eldest first).
+	 */
+	private final LinkedHashMap<Key, BoardLayout> map = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * Maximum number of layouts.
+	 */
+	private final int maxEntries;
+	/**
+	 * Maximum total memory of the layouts, in bytes.
+	 */
+	private final long maxBytes;
+	/**
+	 * Current total memory of the layouts, in bytes.
+	 */
+	private long bytes;
+	/**
+	 * Number of lookups served from the cache.
+	 */
+	private long hits;
+	/**
+	 * Number of lookups that generated a board.
+	 */
+	private long misses;
+	/**
+	 * Number of layouts evicted.
+	 */
+	private long evictions;
+
+	/**
+	 * Constructor for a cache bounded by number of entries only.
+	 * @param maxEntries maximum number of layouts.
+	 */
+	public BoardCache(int maxEntries){
+		this(maxEntries, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Constructor for a cache bounded by number of entries and total size.
+	 * @param maxEntries maximum number of layouts.
+	 * @param maxBytes maximum total memory of the layouts.
+	 * @throws IllegalArgumentException if a bound is not positive.
+	 */
+	public BoardCache(int maxEntries, long maxBytes){
+		if(maxEntries <= 0 || maxBytes <= 0){
+			throw new IllegalArgumentException("Cache bounds must be positive!");
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Create a new game for one of the pre-defined levels, reusing a cached layout if possible.
+	 * @param seed for random numbers.
+	 * @param level difficulty of game.
+	 * @return a new game, same board as new MineSweeper(seed, level).
+	 */
+	public MineSweeper newGame(int seed, MineSweeper.Level level){
+		return new MineSweeper(layout(seed, level));
+	}
+
+	/**
+	 * Create a new customized game, reusing a cached layout if possible.
+	 * @param seed for random numbers.
+	 * @param rowCount number of rows.
+	 * @param colCount number of cols.
+	 * @param mineCount number of mines.
+	 * @return a new game, same board as new MineSweeper(seed, CUSTOM, rowCount, colCount, mineCount).
+	 */
+	public MineSweeper newGame(int seed, int rowCount, int colCount, int mineCount){
+		return new MineSweeper(layout(seed, rowCount, colCount, mineCount));
+	}
+
+	/**
+	 * Return the layout for one of the pre-defined levels, generating it on a miss.
+	 * @param seed for random numbers.
+	 * @param level difficulty of game.
+	 * @return the layout.
+	 */
+	public BoardLayout layout(int seed, MineSweeper.Level level){
+		Key key = new Key(seed, level, 0, 0, 0);
+		BoardLayout layout = lookup(key);
+		if(layout == null){
+			layout = store(key, BoardLayout.generate(seed, level));
+		}
+		return layout;
+	}
+
+	/**
+	 * Return the layout for a customized game, generating it on a miss.
+	 * @param seed for random numbers.
+	 * @param rowCount number of rows.
+	 * @param colCount number of cols.
+	 * @param mineCount number of mines.
+	 * @return the layout.
+	 */
+	public BoardLayout layout(int seed, int rowCount, int colCount, int mineCount){
+		Key key = new Key(seed, MineSweeper.Level.CUSTOM, rowCount, colCount, mineCount);
+		BoardLayout layout = lookup(key);
+		if(layout == null){
+			layout = store(key, BoardLayout.generate(seed, rowCount, colCount, mineCount));
+		}
+		return layout;
+	}
+
+	/**
+	 * Look up a key, counting the hit or miss.
+	 * @param key the key.
+	 * @return the layout, null on a miss.
+	 */
+	private synchronized BoardLayout lookup(Key key){
+		BoardLayout layout = map.get(key);
+		if(layout != null){
+			hits++;
+		} else {
+			misses++;
+		}
+		return layout;
+	}
+
+	/**
+	 * Store a freshly generated layout and evict until within bounds.
+	 * If another thread stored the same key meanwhile, its layout is kept and returned.
+	 * @param key the key.
+	 * @param layout the layout.
+	 * @return the cached layout.
+	 */
+	private synchronized BoardLayout store(Key key, BoardLayout layout){
+		BoardLayout old = map.putIfAbsent(key, layout);
+		if(old != null){
+			return old;
+		}
+		bytes += layout.sizeInBytes();
+		Iterator<Map.Entry<Key, BoardLayout>> it = map.entrySet().iterator();
+		while((map.size() > maxEntries || bytes > maxBytes) && it.hasNext()){
+			BoardLayout eldest = it.next().getValue();
+			if(eldest == layout){ // Never evict the layout being returned
+				continue;
+			}
+			bytes -= eldest.sizeInBytes();
+			it.remove();
+			evictions++;
+		}
+		return layout;
+	}
+
+	/**
+	 * Number of cached layouts.
+	 * @return size of the cache.
+	 */
+	public synchronized int size(){ return map.size(); }
+
+	/**
+	 * Total memory of the cached layouts.
+	 * @return bytes.
+	 */
+	public synchronized long sizeInBytes(){ return bytes; }
+
+	/**
+	 * Number of lookups served from the cache.
+	 * @return hits.
+	 */
+	public synchronized long hits(){ return hits; }
+
+	/**
+	 * Number of lookups that had to generate a board.
+	 * @return misses.
+	 */
+	public synchronized long misses(){ return misses; }
+
+	/**
+	 * Number of layouts evicted.
+	 * @return evictions.
+	 */
+	public synchronized long evictions(){ return evictions; }
+
+	/**
+	 * Fraction of lookups served from the cache.
+	 * @return hit rate between 0 and 1.
+	 */
+	public synchronized double hitRate(){
+		long total = hits + misses;
+		return total == 0 ? 0 : (double)hits / total;
+	}
+
+	/**
+	 * Remove every layout. Statistics are kept.
+	 */
+	public synchronized void clear(){
+		map.clear();
+		bytes = 0;
+	}
+}
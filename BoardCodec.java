@@ -0,0 +1,549 @@
+package com.minesweeper;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+/**
+ * Compact snapshots of a game: its size, mines, opened cells and flags.
+ * Each of the three cell sets is a section stored in whichever encoding is smallest for it:
+ * DELTA (varint gaps between set cells, for sparse sets such as mines), RUNS (varint lengths of
+ * alternating clear and set runs, for the large contiguous areas of opened cells) or RAW (the plain
+ * bitset, one bit per cell, for dense or noisy sets). Sizes are computed from the game's bitsets
+ * before writing, so encoding streams straight to the output in O(cells / 64 + runs), and decoding
+ * hands cells to a Visitor one at a time without building a board.
+ *
+ * Layout: int magic "MSB1", level ordinal byte, varint rows, varint cols, then the MINES, FLAGS and
+ * VISIBLE sections, each an encoding byte, a varint number of set cells and the payload.
+ * Varints are unsigned LEB128.
+ */
+public final class BoardCodec {
+
+	/**
+	 * Section of mine cells.
+	 */
+	public static final int MINES = 0;
+	/**
+	 * Section of flagged cells.
+	 */
+	public static final int FLAGS = 1;
+	/**
+	 * Section of opened cells.
+	 */
+	public static final int VISIBLE = 2;
+
+	/**
+	 * Encoding: varint gap before each set cell.
+	 */
+	public static final int DELTA = 0;
+	/**
+	 * Encoding: varint lengths of clear run, set run pairs; the trailing clear run is left out.
+	 */
+	public static final int RUNS = 1;
+	/**
+	 * Encoding: plain bitset, (cells + 7) / 8 bytes, cell i in bit i % 8 of byte i / 8.
+	 */
+	public static final int RAW = 2;
+
+	/**
+	 * "MSB1", first four bytes of a snapshot.
+	 */
+	private static final int MAGIC = 0x4D534231;
+
+	/**
+	 * Receives a decoded snapshot, in stream order.
+	 */
+	public interface Visitor {
+		/**
+		 * Called first, with the board size.
+		 * @param level difficulty level.
+		 * @param rows number of rows.
+		 * @param cols number of cols.
+		 */
+		void board(MineSweeper.Level level, int rows, int cols);
+
+		/**
+		 * Called at the start of each section, MINES, FLAGS then VISIBLE.
+		 * @param section MINES, FLAGS or VISIBLE.
+		 * @param encoding DELTA, RUNS or RAW.
+		 * @param count number of cells in the section.
+		 */
+		void section(int section, int encoding, int count);
+
+		/**
+		 * Called for each cell of a DELTA or RAW section, in increasing index order.
+		 * @param section MINES, FLAGS or VISIBLE.
+		 * @param index row-major index (row * cols + col).
+		 */
+		void cell(int section, int index);
+
+		/**
+		 * Called for each run of a RUNS section instead of cell(); by default calls cell() on each index.
+		 * @param section MINES, FLAGS or VISIBLE.
+		 * @param from first index of the run.
+		 * @param to index after the run.
+		 */
+		default void run(int section, int from, int to){
+			for(int index = from; index < to; ++index){
+				cell(section, index);
+			}
+		}
+	}
+
+	/**
+	 * No instances.
+	 */
+	private BoardCodec(){ }
+
+	/**
+	 * Write a snapshot of a game. The output is buffered internally and flushed, not closed.
+	 * @param game a game on the SQUARE topology.
+	 * @param out output stream.
+	 * @return number of bytes written.
+	 * @throws IOException if the output fails.
+	 */
+	public static long write(MineSweeper game, OutputStream out) throws IOException {
+		if(game == null || out == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		if(game.getTopology() != Topology.SQUARE){
+			throw new IllegalArgumentException("Only SQUARE boards can be encoded!");
+		}
+		int size = game.rowCount() * game.colCount();
+		Writer writer = new Writer(out);
+		writer.int32(MAGIC);
+		writer.put(game.getLevel().ordinal());
+		writer.varint(game.rowCount());
+		writer.varint(game.colCount());
+		writeSection(writer, game.getMineBits(), size);
+		writeSection(writer, game.getFlagBits(), size);
+		writeSection(writer, game.getVisibleBits(), size);
+		writer.flush();
+		return writer.total;
+	}
+
+	/**
+	 * Report the size of a snapshot of a game without writing it, O(cells / 64 + runs).
+	 * @param game the game.
+	 * @return number of bytes write() would produce.
+	 */
+	public static long encodedSize(MineSweeper game){
+		if(game == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		int size = game.rowCount() * game.colCount();
+		long total = 5 + varintLength(game.rowCount()) + varintLength(game.colCount());
+		for(long[] bits : new long[][] {game.getMineBits(), game.getFlagBits(), game.getVisibleBits()}){
+			long[] costs = costs(bits, size);
+			total += 1 + varintLength((int)costs[3]) + Math.min(costs[DELTA], Math.min(costs[RUNS], costs[RAW]));
+		}
+		return total;
+	}
+
+	/**
+	 * Decode a snapshot, handing its cells to a visitor. Reads exactly one snapshot and nothing more,
+	 * one byte at a time for the varints, so wrap files in a BufferedInputStream.
+	 * @param in input stream.
+	 * @param visitor receives the board size, sections and cells.
+	 * @throws IOException if the input fails, ends early or is not a valid snapshot.
+	 */
+	public static void read(InputStream in, Visitor visitor) throws IOException {
+		if(in == null || visitor == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		Reader reader = new Reader(in);
+		if(reader.int32() != MAGIC){
+			throw new IOException("Not a board snapshot!");
+		}
+		int level = reader.get();
+		int rows = reader.varint();
+		int cols = reader.varint();
+		if(level >= MineSweeper.Level.values().length || rows <= 0 || cols <= 0 || (long)rows * cols > Integer.MAX_VALUE){
+			throw new IOException("Invalid board size!");
+		}
+		visitor.board(MineSweeper.Level.values()[level], rows, cols);
+		for(int section = MINES; section <= VISIBLE; ++section){
+			readSection(reader, visitor, section, rows * cols);
+		}
+	}
+
+	/**
+	 * Decode a snapshot into a new game: the board is built from the mines, then the flags are placed
+	 * and the opened cells clicked, which restores the status and counters too. Flagged cells opened by
+	 * a cascade come back the same way, as clicks skip flagged cells but cascades do not.
+	 * @param in input stream.
+	 * @return the game.
+	 * @throws IOException if the input fails, ends early or is not a valid snapshot.
+	 */
+	public static MineSweeper readGame(InputStream in) throws IOException {
+		GameBuilder builder = new GameBuilder();
+		read(in, builder);
+		return builder.game;
+	}
+
+	/**
+	 * Write one section in its smallest encoding.
+	 * @param writer output.
+	 * @param bits the bitset.
+	 * @param size number of cells.
+	 * @throws IOException if the output fails.
+	 */
+	private static void writeSection(Writer writer, long[] bits, int size) throws IOException {
+		long[] costs = costs(bits, size);
+		int encoding = costs[DELTA] < costs[RUNS] ? DELTA : RUNS;
+		if(costs[RAW] <= costs[encoding]){ // Cheapest to decode on a tie
+			encoding = RAW;
+		}
+		writer.put(encoding);
+		writer.varint((int)costs[3]);
+		if(encoding == RAW){
+			writer.raw(bits, (size + 7) >>> 3);
+			return;
+		}
+		int pos = 0; // End of the previous set run
+		for(int start = Bits.nextSet(bits, 0, size); start >= 0; ){
+			int end = Bits.nextClear(bits, start, size);
+			if(end < 0){
+				end = size;
+			}
+			writer.varint(start - pos);
+			if(encoding == RUNS){
+				writer.varint(end - start);
+			} else {
+				for(int i = start + 1; i < end; ++i){ // Adjacent cells: zero gaps
+					writer.put(0);
+				}
+			}
+			pos = end;
+			start = Bits.nextSet(bits, end, size);
+		}
+	}
+
+	/**
+	 * Compute the payload size of a section in each encoding, in one pass over its runs.
+	 * Sizes larger than RAW's are only lower bounds.
+	 * @param bits the bitset.
+	 * @param size number of cells.
+	 * @return {DELTA bytes, RUNS bytes, RAW bytes, set cell count}.
+	 */
+	private static long[] costs(long[] bits, int size){
+		long count = 0;
+		long runStarts = 0;
+		long carry = 0; // Top bit of the previous word
+		for(long word : bits){ // Word-parallel lower bounds: a byte per DELTA cell, two per RUNS run
+			count += Long.bitCount(word);
+			runStarts += Long.bitCount(word & ~((word << 1) | carry));
+			carry = word >>> 63;
+		}
+		long raw = (size + 7) >>> 3;
+		if(count > raw && 2 * runStarts > raw){
+			return new long[] {count, 2 * runStarts, raw, count};
+		}
+		long delta = 0;
+		long runs = 0;
+		int pos = 0;
+		for(int start = Bits.nextSet(bits, 0, size); start >= 0 && Math.min(delta, runs) <= raw; ){ // Stop once RAW wins
+			int end = Bits.nextClear(bits, start, size);
+			if(end < 0){
+				end = size;
+			}
+			int gap = varintLength(start - pos);
+			delta += gap + (end - start - 1); // The first gap, then one zero byte per adjacent cell
+			runs += gap + varintLength(end - start);
+			pos = end;
+			start = Bits.nextSet(bits, end, size);
+		}
+		return new long[] {delta, runs, raw, count};
+	}
+
+	/**
+	 * Decode one section.
+	 * @param reader input.
+	 * @param visitor receives the cells.
+	 * @param section MINES, FLAGS or VISIBLE.
+	 * @param size number of cells.
+	 * @throws IOException if the input fails, ends early or is invalid.
+	 */
+	private static void readSection(Reader reader, Visitor visitor, int section, int size) throws IOException {
+		int encoding = reader.get();
+		int count = reader.varint();
+		if(encoding > RAW || count > size){
+			throw new IOException("Invalid section!");
+		}
+		visitor.section(section, encoding, count);
+		if(encoding == RAW){
+			byte[] chunk = new byte[Math.min((size + 7) >>> 3, 4096)];
+			int seen = 0;
+			for(int first = 0; first < size; ){ // Bytes are read a chunk at a time
+				int n = Math.min(chunk.length, ((size + 7) >>> 3) - (first >>> 3));
+				reader.fill(chunk, n);
+				for(int i = 0; i < n; ++i, first += 8){
+					for(int b = chunk[i] & 0xFF; b != 0; b &= b - 1){
+						int index = first + Integer.numberOfTrailingZeros(b);
+						if(index >= size){
+							throw new IOException("Invalid section!");
+						}
+						visitor.cell(section, index);
+						seen++;
+					}
+				}
+			}
+			if(seen != count){
+				throw new IOException("Invalid section!");
+			}
+			return;
+		}
+		long pos = 0; // Next cell that may be set
+		for(int seen = 0; seen < count; ){
+			pos += reader.varint();
+			long run = encoding == RUNS ? reader.varint() : 1;
+			if(run == 0 || run > count - seen || pos + run > size){
+				throw new IOException("Invalid section!");
+			}
+			if(encoding == RUNS){
+				visitor.run(section, (int)pos, (int)(pos + run));
+			} else {
+				visitor.cell(section, (int)pos);
+			}
+			pos += run;
+			seen += (int)run;
+		}
+	}
+
+	/**
+	 * Number of bytes of a varint.
+	 * @param value non-negative value.
+	 * @return 1 to 5.
+	 */
+	private static int varintLength(int value){
+		return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+	}
+
+	/**
+	 * Buffered snapshot output.
+	 */
+	private static final class Writer {
+		/**
+		 * Destination.
+		 */
+		private final OutputStream out;
+		/**
+		 * Bytes not written yet.
+		 */
+		private final byte[] buf = new byte[8192];
+		/**
+		 * Number of bytes in buf.
+		 */
+		private int size;
+		/**
+		 * Number of bytes put so far.
+		 */
+		long total;
+
+		/**
+		 * Constructor.
+		 * @param out destination.
+		 */
+		Writer(OutputStream out){
+			this.out = out;
+		}
+
+		/**
+		 * Put one byte.
+		 * @param b the byte, in the low 8 bits.
+		 * @throws IOException if the output fails.
+		 */
+		void put(int b) throws IOException {
+			if(size == buf.length){
+				out.write(buf, 0, size);
+				size = 0;
+			}
+			buf[size++] = (byte)b;
+			total++;
+		}
+
+		/**
+		 * Put an unsigned varint.
+		 * @param value non-negative value.
+		 * @throws IOException if the output fails.
+		 */
+		void varint(int value) throws IOException {
+			while((value & ~0x7F) != 0){
+				put((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			put(value);
+		}
+
+		/**
+		 * Put the first bytes of a bitset, little-endian within each word.
+		 * @param bits the bitset.
+		 * @param bytes number of bytes.
+		 * @throws IOException if the output fails.
+		 */
+		void raw(long[] bits, int bytes) throws IOException {
+			for(int i = 0; i < bytes; ){
+				if(size == buf.length){
+					out.write(buf, 0, size);
+					size = 0;
+				}
+				int n = Math.min(bytes - i, buf.length - size);
+				total += n;
+				for(int end = i + n; i < end; ++i){
+					buf[size++] = (byte)(bits[i >>> 3] >>> ((i & 7) << 3));
+				}
+			}
+		}
+
+		/**
+		 * Put a big-endian int.
+		 * @param value the value.
+		 * @throws IOException if the output fails.
+		 */
+		void int32(int value) throws IOException {
+			for(int shift = 24; shift >= 0; shift -= 8){
+				put(value >>> shift);
+			}
+		}
+
+		/**
+		 * Write out the buffered bytes and flush the destination.
+		 * @throws IOException if the output fails.
+		 */
+		void flush() throws IOException {
+			out.write(buf, 0, size);
+			size = 0;
+			out.flush();
+		}
+	}
+
+	/**
+	 * Snapshot input that never reads past the snapshot.
+	 */
+	private static final class Reader {
+		/**
+		 * Source.
+		 */
+		private final InputStream in;
+
+		/**
+		 * Constructor.
+		 * @param in source.
+		 */
+		Reader(InputStream in){
+			this.in = in;
+		}
+
+		/**
+		 * Get one byte.
+		 * @return 0 to 255.
+		 * @throws IOException if the input fails or ends.
+		 */
+		int get() throws IOException {
+			int b = in.read();
+			if(b < 0){
+				throw new EOFException("Snapshot ends early!");
+			}
+			return b;
+		}
+
+		/**
+		 * Get the next n bytes.
+		 * @param dst destination, from index 0.
+		 * @param n number of bytes.
+		 * @throws IOException if the input fails or ends.
+		 */
+		void fill(byte[] dst, int n) throws IOException {
+			if(in.readNBytes(dst, 0, n) != n){
+				throw new EOFException("Snapshot ends early!");
+			}
+		}
+
+		/**
+		 * Get an unsigned varint.
+		 * @return non-negative value.
+		 * @throws IOException if the input fails, ends or the varint is too long.
+		 */
+		int varint() throws IOException {
+			int value = 0;
+			for(int shift = 0; shift < 35; shift += 7){
+				int b = get();
+				if(shift == 28 && (b & 0xF8) != 0){ // Past 31 bits
+					break;
+				}
+				value |= (b & 0x7F) << shift;
+				if((b & 0x80) == 0){
+					return value;
+				}
+			}
+			throw new IOException("Invalid varint!");
+		}
+
+		/**
+		 * Get a big-endian int.
+		 * @return the value.
+		 * @throws IOException if the input fails or ends.
+		 */
+		int int32() throws IOException {
+			int value = 0;
+			for(int i = 0; i < 4; ++i){
+				value = (value << 8) | get();
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * Visitor that rebuilds a game: mines into a bitset, then flags and clicks on the game.
+	 */
+	private static final class GameBuilder implements Visitor {
+		/**
+		 * Level of the snapshot.
+		 */
+		private MineSweeper.Level level;
+		/**
+		 * Number of rows.
+		 */
+		private int rows;
+		/**
+		 * Number of cols.
+		 */
+		private int cols;
+		/**
+		 * Mines read so far.
+		 */
+		private long[] mines;
+		/**
+		 * The game, built once the mines are known.
+		 */
+		MineSweeper game;
+
+		@Override
+		public void board(MineSweeper.Level level, int rows, int cols){
+			this.level = level;
+			this.rows = rows;
+			this.cols = cols;
+			mines = new long[Bits.words(rows * cols)];
+		}
+
+		@Override
+		public void section(int section, int encoding, int count){
+			if(section == FLAGS){
+				game = new MineSweeper(BoardLayout.of(level, rows, cols, mines));
+				mines = null;
+			}
+		}
+
+		@Override
+		public void cell(int section, int index){
+			int row = index / cols;
+			int col = index % cols;
+			if(section == MINES){
+				Bits.set(mines, index);
+			} else if(section == FLAGS){
+				game.flagAt(row, col);
+			} else if(!game.isVisible(row, col)){ // Not opened by an earlier cascade
+				game.clickAt(row, col);
+			}
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package com.minesweeper;
+import java.util.Random;
+/**
+ * Immutable snapshot of a generated board: where the mines are and the neighbour count of each cell.
+ * Games can be created from a layout without re-running mine placement or counting,
+ * only the mutable per-game state is set up. Layouts are always SQUARE, so the games,
+ * OffHeapGames and ReplayVerifiers built from them are too.
+ */
+public final class BoardLayout {
+
+	/**
+	 * Difficulty level the board was generated for.
+	 */
+	private final MineSweeper.Level level;
+	/**
+	 * Number of rows.
+	 */
+	private final int rows;
+	/**
+	 * Number of columns.
+	 */
+	private final int cols;
+	/**
+	 * Number of mines.
+	 */
+	private final int mines;
+	/**
+	 * Mine bitset, bit (row * cols + col).
+	 */
+	private final long[] mineBits;
+	/**
+	 * Neighbour counts in row-major order, -1 for a mine.
+	 */
+	private final byte[] counts;
+
+	/**
+	 * Private constructor, use of().
+	 * @param level difficulty level.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param mines number of mines.
+	 * @param mineBits mine bitset.
+	 * @param counts neighbour counts.
+	 */
+	private BoardLayout(MineSweeper.Level level, int rows, int cols, int mines, long[] mineBits, byte[] counts){
+		this.level = level;
+		this.rows = rows;
+		this.cols = cols;
+		this.mines = mines;
+		this.mineBits = mineBits;
+		this.counts = counts;
+	}
+
+	/**
+	 * Capture the layout of a game, O(rows x cols).
+	 * Only mines and counts are captured; visible and flagged cells are ignored.
+	 * Layouts are SQUARE: their counts are rebuilt by SQUARE games.
+	 * @param game the game to capture, on the SQUARE topology.
+	 * @return the layout.
+	 */
+	public static BoardLayout of(MineSweeper game){
+		if(game == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		if(game.getTopology() != Topology.SQUARE){
+			throw new IllegalArgumentException("Only SQUARE boards have a layout!");
+		}
+		int rows = game.rowCount();
+		int cols = game.colCount();
+		long[] mineBits = new long[(rows * cols + 63) >>> 6];
+		byte[] counts = new byte[rows * cols];
+		int mines = 0;
+		for(int i = 0; i < rows; ++i){
+			for(int j = 0; j < cols; ++j){
+				int idx = i * cols + j;
+				if(game.hasMine(i, j)){
+					mineBits[idx >>> 6] |= 1L << idx;
+					mines++;
+				}
+				counts[idx] = (byte)game.getCount(i, j);
+			}
+		}
+		return new BoardLayout(game.getLevel(), rows, cols, mines, mineBits, counts);
+	}
+
+	/**
+	 * Generate the layout of new MineSweeper(seed, level) without creating the game, O(rows x cols).
+	 * @param seed for random numbers.
+	 * @param level a pre-defined difficulty level.
+	 * @return the layout.
+	 */
+	public static BoardLayout generate(int seed, MineSweeper.Level level){
+		int[] size = MineSweeper.levelSize(level);
+		return generate(seed, level, size[0], size[1], size[2]);
+	}
+
+	/**
+	 * Generate the layout of new MineSweeper(seed, CUSTOM, rows, cols, mines) without creating the game.
+	 * @param seed for random numbers.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param mines number of mines.
+	 * @return the layout.
+	 */
+	public static BoardLayout generate(int seed, int rows, int cols, int mines){
+		return generate(seed, MineSweeper.Level.CUSTOM, rows, cols, mines);
+	}
+
+	/**
+	 * Place mines exactly like MineSweeper.initBoard(int) and count neighbours with NbrCountKernel.
+	 * @param seed for random numbers.
+	 * @param level difficulty level.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param mines number of mines.
+	 * @return the layout.
+	 */
+	private static BoardLayout generate(int seed, MineSweeper.Level level, int rows, int cols, int mines){
+		if(rows <= 0 || cols <= 0 || mines < 0 || mines > rows * cols){
+			throw new IllegalArgumentException("Invalid board size!");
+		}
+		Random random = new Random(seed);
+		int stride = cols + 2;
+		byte[] plane = new byte[(rows + 2) * stride]; // Padded mine plane
+		long[] mineBits = new long[(rows * cols + 63) >>> 6];
+		for(int placed = 0; placed < mines; ){
+			int row = random.nextInt(rows);
+			int col = random.nextInt(cols);
+			int p = (row + 1) * stride + col + 1;
+			if(plane[p] != 0){ // Cell already has a mine: try again
+				continue;
+			}
+			plane[p] = 1;
+			int idx = row * cols + col;
+			mineBits[idx >>> 6] |= 1L << idx;
+			placed++;
+		}
+		return counted(level, rows, cols, mines, plane, mineBits);
+	}
+
+	/**
+	 * Build the layout of a board from its mines alone, e.g. a decoded snapshot, O(rows x cols).
+	 * @param level difficulty level.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param mineBits mine bitset, bit (row * cols + col); not kept.
+	 * @return the layout.
+	 */
+	public static BoardLayout of(MineSweeper.Level level, int rows, int cols, long[] mineBits){
+		if(level == null || mineBits == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		if(rows <= 0 || cols <= 0 || mineBits.length != Bits.words(rows * cols)){
+			throw new IllegalArgumentException("Invalid board size!");
+		}
+		int stride = cols + 2;
+		byte[] plane = new byte[(rows + 2) * stride];
+		long[] bits = new long[mineBits.length];
+		int mines = 0;
+		for(int idx = Bits.nextSet(mineBits, 0, rows * cols); idx >= 0; idx = Bits.nextSet(mineBits, idx + 1, rows * cols)){
+			plane[(idx / cols + 1) * stride + idx % cols + 1] = 1;
+			Bits.set(bits, idx);
+			mines++;
+		}
+		return counted(level, rows, cols, mines, plane, bits);
+	}
+
+	/**
+	 * Count neighbours with NbrCountKernel and build the layout.
+	 * @param level difficulty level.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param mines number of mines.
+	 * @param plane padded mine plane, 1 for a mine.
+	 * @param mineBits mine bitset.
+	 * @return the layout.
+	 */
+	private static BoardLayout counted(MineSweeper.Level level, int rows, int cols, int mines, byte[] plane, long[] mineBits){
+		int stride = cols + 2;
+		byte[] padded = new byte[plane.length];
+		NbrCountKernel.count(plane, cols, padded, 0, rows);
+		byte[] counts = new byte[rows * cols];
+		for(int row = 0; row < rows; ++row){
+			for(int col = 0; col < cols; ++col){
+				int p = (row + 1) * stride + col + 1;
+				counts[row * cols + col] = plane[p] != 0 ? -1 : padded[p];
+			}
+		}
+		return new BoardLayout(level, rows, cols, mines, mineBits, counts);
+	}
+
+	/**
+	 * Report difficulty level.
+	 * @return level.
+	 */
+	public MineSweeper.Level level(){ return level; }
+
+	/**
+	 * Report number of rows.
+	 * @return number of rows.
+	 */
+	public int rowCount(){ return rows; }
+
+	/**
+	 * Report number of columns.
+	 * @return number of columns.
+	 */
+	public int colCount(){ return cols; }
+
+	/**
+	 * Report number of mines.
+	 * @return number of mines.
+	 */
+	public int mineCount(){ return mines; }
+
+	/**
+	 * Return true if cell at (row,col) has a mine, false otherwise (also for invalid cells).
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return boolean value.
+	 */
+	public boolean hasMine(int row, int col){
+		if(row < 0 || row >= rows || col < 0 || col >= cols){
+			return false;
+		}
+		int idx = row * cols + col;
+		return (mineBits[idx >>> 6] & (1L << idx)) != 0;
+	}
+
+	/**
+	 * Return the neighbour count of cell at (row,col).
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return -2 for invalid cells, -1 for a mine, number of adjacent mines otherwise.
+	 */
+	public int getCount(int row, int col){
+		if(row < 0 || row >= rows || col < 0 || col >= cols){
+			return -2;
+		}
+		return counts[row * cols + col];
+	}
+
+	/**
+	 * Neighbour counts in row-major order, -1 for a mine. Not copied: callers must not modify it.
+	 * @return the counts array.
+	 */
+	byte[] counts(){
+		return counts;
+	}
+
+	/**
+	 * Approximate memory used by the layout.
+	 * @return bytes.
+	 */
+	public long sizeInBytes(){
+		return 8L * mineBits.length + counts.length + 64;
+	}
+}
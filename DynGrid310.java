@@ -1,4 +1,10 @@
 package com.minesweeper;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 /**
  * Generic dynamic grid class.
  * @param <T> generic type item.
@@ -177,6 +183,331 @@ public class DynGrid310<T> {
 		
 	}
 
+	/**
+	 * Stream of the rows, top to bottom, split by row ranges when parallel.
+	 * The rows are the live rows of the grid.
+	 * @return the stream.
+	 */
+	public Stream<DynArr310<T>> rows(){
+		return storage.stream();
+	}
+
+	/**
+	 * Stream of one column, top to bottom, split by row ranges when parallel.
+	 * @param col the column.
+	 * @return the stream.
+	 */
+	public Stream<T> column(int col){
+		if(col < 0 || col >= getNumCol()){
+			throw new IndexOutOfBoundsException("Col: " + col + " out of bounds!");
+		}
+		return rows().map(row -> row.get(col));
+	}
+
+	/**
+	 * Stream of every cell in row-major order. Use cells().parallel() for board-wide queries:
+	 * it splits by row ranges, so each worker walks whole rows.
+	 * @return the stream.
+	 */
+	public Stream<T> cells(){
+		return StreamSupport.stream(new CellSpliterator<>(storage, 0, getNumRow(), 0, getNumCol()), false);
+	}
+
+	/**
+	 * Live window onto a rectangle of the grid, O(1). Nothing is copied: reads and writes
+	 * go straight to the grid, and rows or cols added or removed later shift what the view sees.
+	 * @param rowFrom first row of the window.
+	 * @param colFrom first col of the window.
+	 * @param rows number of rows of the window.
+	 * @param cols number of cols of the window.
+	 * @return the view.
+	 */
+	public GridView view(int rowFrom, int colFrom, int rows, int cols){
+		return new GridView(0, 0, this.rows, this.cols).view(rowFrom, colFrom, rows, cols);
+	}
+
+	/**
+	 * Bounds-translated window onto a rectangle of the grid.
+	 * Cells are addressed relative to the window; views of views stay windows onto the grid.
+	 */
+	public final class GridView implements Iterable<T> {
+		/**
+		 * Grid row of the first view row.
+		 */
+		private final int rowFrom;
+		/**
+		 * Grid col of the first view col.
+		 */
+		private final int colFrom;
+		/**
+		 * Number of rows in the view.
+		 */
+		private final int numRow;
+		/**
+		 * Number of cols in the view.
+		 */
+		private final int numCol;
+
+		/**
+		 * Constructor, use DynGrid310.view().
+		 * @param rowFrom grid row of the first view row.
+		 * @param colFrom grid col of the first view col.
+		 * @param numRow number of rows.
+		 * @param numCol number of cols.
+		 */
+		private GridView(int rowFrom, int colFrom, int numRow, int numCol){
+			this.rowFrom = rowFrom;
+			this.colFrom = colFrom;
+			this.numRow = numRow;
+			this.numCol = numCol;
+		}
+
+		/**
+		 * Number of rows in the view, O(1).
+		 * @return integer value.
+		 */
+		public int getNumRow(){
+			return numRow;
+		}
+
+		/**
+		 * Number of cols in the view, O(1).
+		 * @return integer value.
+		 */
+		public int getNumCol(){
+			return numCol;
+		}
+
+		/**
+		 * Grid row of the first view row, O(1).
+		 * @return integer value.
+		 */
+		public int rowOffset(){
+			return rowFrom;
+		}
+
+		/**
+		 * Grid col of the first view col, O(1).
+		 * @return integer value.
+		 */
+		public int colOffset(){
+			return colFrom;
+		}
+
+		/**
+		 * Get the cell value at a view location, O(1).
+		 * @param row the row in the view.
+		 * @param col the col in the view.
+		 * @return the value in that location.
+		 */
+		public T get(int row, int col){
+			check(row, col);
+			return DynGrid310.this.get(rowFrom + row, colFrom + col);
+		}
+
+		/**
+		 * Change the cell value at a view location and return the old cell value, O(1).
+		 * @param row the row in the view.
+		 * @param col the col in the view.
+		 * @param value the new value.
+		 * @return the old value.
+		 */
+		public T set(int row, int col, T value){
+			check(row, col);
+			return DynGrid310.this.set(rowFrom + row, colFrom + col, value);
+		}
+
+		/**
+		 * Window onto a rectangle of this view, O(1).
+		 * @param rowFrom first row, relative to this view.
+		 * @param colFrom first col, relative to this view.
+		 * @param rows number of rows.
+		 * @param cols number of cols.
+		 * @return the view.
+		 */
+		public GridView view(int rowFrom, int colFrom, int rows, int cols){
+			if(rows < 0 || cols < 0){
+				throw new IllegalArgumentException("Invalid view size!");
+			}
+			if(rowFrom < 0 || colFrom < 0 || rowFrom > numRow - rows || colFrom > numCol - cols){
+				throw new IndexOutOfBoundsException("View(" + rowFrom + "," + colFrom + "," + rows + "," + cols + ") out of bounds!");
+			}
+			return new GridView(this.rowFrom + rowFrom, this.colFrom + colFrom, rows, cols);
+		}
+
+		/**
+		 * Iterate the cells in row-major order.
+		 * @return the iterator.
+		 */
+		@Override
+		public Iterator<T> iterator(){
+			return Spliterators.iterator(spliterator());
+		}
+
+		/**
+		 * Split the cells by row ranges, see DynGrid310.cells().
+		 * @return the spliterator.
+		 */
+		@Override
+		public Spliterator<T> spliterator(){
+			return new CellSpliterator<>(storage, rowFrom, rowFrom + numRow, colFrom, colFrom + numCol);
+		}
+
+		/**
+		 * Stream of the cells in row-major order.
+		 * @return the stream.
+		 */
+		public Stream<T> cells(){
+			return StreamSupport.stream(spliterator(), false);
+		}
+
+		/**
+		 * Check a view location.
+		 * @param row the row in the view.
+		 * @param col the col in the view.
+		 */
+		private void check(int row, int col){
+			if(row < 0 || row >= numRow || col < 0 || col >= numCol){
+				throw new IndexOutOfBoundsException("Index("+row+","+col+") out of bounds!");
+			}
+		}
+
+		/**
+		 * toString method for the view, in the grid's format.
+		 * @return string representation of the view.
+		 */
+		@Override
+		public String toString(){
+			if(numRow == 0 || numCol == 0){ return "empty board"; }
+			StringBuilder sb = new StringBuilder();
+			for(int row = 0; row < numRow; row++){
+				sb.append("|");
+				for(int col = 0; col < numCol; col++){
+					sb.append(get(row, col)).append("|");
+				}
+				sb.append("\n");
+			}
+			return sb.toString().trim();
+		}
+	}
+
+	/**
+	 * Cells of a rectangle of rows in row-major order, split by halving the row range.
+	 * @param <T> generic type item.
+	 */
+	static final class CellSpliterator<T> implements Spliterator<T> {
+		/**
+		 * Rows of the grid.
+		 */
+		private final DynArr310<DynArr310<T>> storage;
+		/**
+		 * First column of the rectangle.
+		 */
+		private final int colFrom;
+		/**
+		 * Column after the rectangle.
+		 */
+		private final int colTo;
+		/**
+		 * Row after the range.
+		 */
+		private final int rowTo;
+		/**
+		 * Current row.
+		 */
+		private int row;
+		/**
+		 * Current column.
+		 */
+		private int col;
+
+		/**
+		 * Constructor.
+		 * @param storage rows of the grid.
+		 * @param rowFrom first row.
+		 * @param rowTo row after the range.
+		 * @param colFrom first column.
+		 * @param colTo column after the range.
+		 */
+		CellSpliterator(DynArr310<DynArr310<T>> storage, int rowFrom, int rowTo, int colFrom, int colTo){
+			this.storage = storage;
+			this.row = rowFrom;
+			this.rowTo = colFrom < colTo ? rowTo : rowFrom; // No columns: no cells
+			this.colFrom = colFrom;
+			this.colTo = colTo;
+			this.col = colFrom;
+		}
+
+		/**
+		 * Hand the next cell to the action, O(1).
+		 * @param action the action.
+		 * @return false if there are no cells left.
+		 */
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action){
+			if(row >= rowTo){
+				return false;
+			}
+			action.accept(storage.get(row).get(col));
+			if(++col == colTo){
+				col = colFrom;
+				row++;
+			}
+			return true;
+		}
+
+		/**
+		 * Hand every remaining cell to the action, looking each row up once.
+		 * @param action the action.
+		 */
+		@Override
+		public void forEachRemaining(Consumer<? super T> action){
+			for(; row < rowTo; ++row, col = colFrom){
+				DynArr310<T> cells = storage.get(row);
+				for(; col < colTo; ++col){
+					action.accept(cells.get(col));
+				}
+			}
+		}
+
+		/**
+		 * Give away the first half of the remaining rows, O(1).
+		 * @return the first half, null if fewer than two whole rows are left.
+		 */
+		@Override
+		public Spliterator<T> trySplit(){
+			int from = col == colFrom ? row : row + 1; // A started row stays with the prefix
+			int mid = (from + rowTo) >>> 1;
+			if(mid <= from){
+				return null;
+			}
+			CellSpliterator<T> prefix = new CellSpliterator<>(storage, row, mid, colFrom, colTo);
+			prefix.col = col;
+			row = mid;
+			col = colFrom;
+			return prefix;
+		}
+
+		/**
+		 * Number of cells left, O(1).
+		 * @return exact size.
+		 */
+		@Override
+		public long estimateSize(){
+			return row >= rowTo ? 0 : (long)(rowTo - row) * (colTo - colFrom) - (col - colFrom);
+		}
+
+		/**
+		 * Report the characteristics.
+		 * @return ORDERED, SIZED, SUBSIZED and NONNULL.
+		 */
+		@Override
+		public int characteristics(){
+			return ORDERED | SIZED | SUBSIZED | NONNULL;
+		}
+	}
+
+
 
 	
 
@@ -298,6 +629,38 @@ public class DynGrid310<T> {
 			igrid.getNumRow() == 0 && igrid.getNumCol() == 0 ){
 			System.out.println("Yay 6");	
 		}
+
+		//streams: rows, one column, all cells in row-major order, also in parallel
+		DynGrid310<Integer> big = new DynGrid310<>();
+		for (int i=0; i<100; i++){
+			DynArr310<Integer> brow = new DynArr310<>();
+			for (int j=0; j<7; j++)
+				brow.add(i * 7 + j);
+			big.addRow(i, brow);
+		}
+		if (big.rows().count() == 100 && big.column(3).mapToInt(Integer::intValue).sum() == 7 * 4950 + 300 &&
+			big.cells().mapToInt(Integer::intValue).sum() == 699 * 700 / 2 &&
+			big.cells().parallel().mapToInt(Integer::intValue).sum() == 699 * 700 / 2 &&
+			big.cells().parallel().skip(350).findFirst().get() == 350){
+			System.out.println("Yay 7");
+		}
+
+		//views: translated get/set, nesting, iteration, no copies
+		DynGrid310<Integer>.GridView window = big.view(10, 2, 5, 4);
+		DynGrid310<Integer>.GridView inner = window.view(1, 1, 2, 2);
+		int viewSum = 0;
+		for (int v : inner)
+			viewSum += v;
+		boolean viewOk = window.get(0, 0) == 72 && inner.get(1, 1) == 88 && viewSum == 80 + 81 + 87 + 88;
+		inner.set(0, 0, -1);
+		if (viewOk && big.get(11, 3) == -1 && window.get(1, 1) == -1 &&
+			inner.cells().count() == 4 && window.view(5, 4, 0, 0).cells().count() == 0){
+			try {
+				window.view(1, 1, 5, 1);
+			} catch (IndexOutOfBoundsException e){
+				System.out.println("Yay 8");
+			}
+		}
 		
 				
 	}
@@ -0,0 +1,231 @@
+package com.minesweeper;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+/**
+ * Registry of counters and latency histograms for the engine hot paths.
+ * Recording is allocation-free and safe from any thread: every counter is a LongAdder,
+ * which keeps per-thread cells and merges them on read.
+ */
+public final class EngineMetrics implements EngineMetricsMBean {
+
+	/**
+	 * JMX name the metrics are registered under.
+	 */
+	public static final String OBJECT_NAME = "com.minesweeper:type=EngineMetrics";
+
+	/**
+	 * The single registry instance.
+	 */
+	private static final EngineMetrics INSTANCE = new EngineMetrics();
+
+	/**
+	 * Whether recording is on.
+	 */
+	private static volatile boolean enabled = true;
+
+	/**
+	 * initBoard() calls.
+	 */
+	private final LongAdder boardsGenerated = new LongAdder();
+	/**
+	 * Mine placement retries.
+	 */
+	private final LongAdder placementRetries = new LongAdder();
+	/**
+	 * initBoard() durations.
+	 */
+	private final Histogram initBoardNanos = new Histogram();
+	/**
+	 * Click latencies, from clickAt() and applyMoves().
+	 */
+	private final Histogram clickNanos = new Histogram();
+	/**
+	 * Cells opened by each click.
+	 */
+	private final Histogram cellsOpened = new Histogram();
+	/**
+	 * Most cells opened by one click, exact (the histogram only knows its bucket).
+	 */
+	private final LongAccumulator cellsOpenedMax = new LongAccumulator(Math::max, 0);
+	/**
+	 * Successful flags.
+	 */
+	private final LongAdder flags = new LongAdder();
+	/**
+	 * Successful un-flags.
+	 */
+	private final LongAdder unflags = new LongAdder();
+	/**
+	 * Games ended SOLVED.
+	 */
+	private final LongAdder solved = new LongAdder();
+	/**
+	 * Games ended EXPLODED.
+	 */
+	private final LongAdder exploded = new LongAdder();
+
+	/**
+	 * Private constructor, use get().
+	 */
+	private EngineMetrics(){ }
+
+	/**
+	 * Return the registry.
+	 * @return the metrics registry.
+	 */
+	public static EngineMetrics get(){ return INSTANCE; }
+
+	/**
+	 * Report whether recording is on.
+	 * @return boolean value.
+	 */
+	public static boolean isEnabled(){ return enabled; }
+
+	/**
+	 * Turn recording on or off.
+	 * @param on whether to record.
+	 */
+	public static void setEnabled(boolean on){ enabled = on; }
+
+	/**
+	 * Register the metrics with the platform MBean server. Calling it again does nothing.
+	 * @throws IllegalStateException if registration fails.
+	 */
+	public static synchronized void register(){
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if(!server.isRegistered(name)){
+				server.registerMBean(INSTANCE, name);
+			}
+		} catch (JMException ex){
+			throw new IllegalStateException("Cannot register engine metrics!", ex);
+		}
+	}
+
+	//******************************************************
+	//*******     Recording, called by the engine    *******
+	//******************************************************
+
+	/**
+	 * Record one initBoard() call.
+	 * @param nanos duration.
+	 * @param retries mine placement retries.
+	 */
+	static void boardGenerated(long nanos, int retries){
+		if(!enabled){
+			return;
+		}
+		INSTANCE.boardsGenerated.increment();
+		INSTANCE.placementRetries.add(retries);
+		INSTANCE.initBoardNanos.record(nanos);
+	}
+
+	/**
+	 * Record one click, from clickAt() or applyMoves().
+	 * @param nanos latency.
+	 * @param opened number of cells opened.
+	 */
+	static void clicked(long nanos, int opened){
+		if(!enabled){
+			return;
+		}
+		INSTANCE.clickNanos.record(nanos);
+		INSTANCE.cellsOpened.record(opened);
+		INSTANCE.cellsOpenedMax.accumulate(opened);
+	}
+
+	/**
+	 * Record a successful flag.
+	 */
+	static void flagged(){
+		if(enabled){
+			INSTANCE.flags.increment();
+		}
+	}
+
+	/**
+	 * Record a successful un-flag.
+	 */
+	static void unflagged(){
+		if(enabled){
+			INSTANCE.unflags.increment();
+		}
+	}
+
+	/**
+	 * Record a finished game.
+	 * @param status the final status, SOLVED or EXPLODED.
+	 */
+	static void gameOver(MineSweeper.Status status){
+		if(!enabled){
+			return;
+		}
+		if(status == MineSweeper.Status.SOLVED){
+			INSTANCE.solved.increment();
+		} else if(status == MineSweeper.Status.EXPLODED){
+			INSTANCE.exploded.increment();
+		}
+	}
+
+	//******************************************************
+	//*******          Reading (MBean)               *******
+	//******************************************************
+
+	@Override
+	public long getBoardsGenerated(){ return boardsGenerated.sum(); }
+
+	@Override
+	public long getPlacementRetries(){ return placementRetries.sum(); }
+
+	@Override
+	public double getInitBoardMeanNanos(){ return initBoardNanos.mean(); }
+
+	@Override
+	public long getInitBoardP99Nanos(){ return initBoardNanos.percentile(99); }
+
+	@Override
+	public long getClicks(){ return clickNanos.count(); }
+
+	@Override
+	public double getClickMeanNanos(){ return clickNanos.mean(); }
+
+	@Override
+	public long getClickP99Nanos(){ return clickNanos.percentile(99); }
+
+	@Override
+	public double getCellsOpenedPerClickMean(){ return cellsOpened.mean(); }
+
+	@Override
+	public long getCellsOpenedPerClickMax(){ return cellsOpenedMax.get(); }
+
+	@Override
+	public long getFlags(){ return flags.sum(); }
+
+	@Override
+	public long getUnflags(){ return unflags.sum(); }
+
+	@Override
+	public long getGamesSolved(){ return solved.sum(); }
+
+	@Override
+	public long getGamesExploded(){ return exploded.sum(); }
+
+	@Override
+	public void reset(){
+		boardsGenerated.reset();
+		placementRetries.reset();
+		initBoardNanos.reset();
+		clickNanos.reset();
+		cellsOpened.reset();
+		cellsOpenedMax.reset();
+		flags.reset();
+		unflags.reset();
+		solved.reset();
+		exploded.reset();
+	}
+}
@@ -0,0 +1,90 @@
+package com.minesweeper;
+/**
+ * JMX management interface for the engine metrics.
+ * Latencies are reported in nanoseconds.
+ */
+public interface EngineMetricsMBean {
+
+	/**
+	 * Number of boards initialized.
+	 * @return count of initBoard() calls.
+	 */
+	long getBoardsGenerated();
+
+	/**
+	 * Number of mine placements that hit an occupied cell and were retried.
+	 * @return count of retries.
+	 */
+	long getPlacementRetries();
+
+	/**
+	 * Mean initBoard() duration.
+	 * @return nanoseconds.
+	 */
+	double getInitBoardMeanNanos();
+
+	/**
+	 * 99th percentile initBoard() duration.
+	 * @return nanoseconds.
+	 */
+	long getInitBoardP99Nanos();
+
+	/**
+	 * Number of clicks.
+	 * @return count of clicks.
+	 */
+	long getClicks();
+
+	/**
+	 * Mean clickAt() latency.
+	 * @return nanoseconds.
+	 */
+	double getClickMeanNanos();
+
+	/**
+	 * 99th percentile clickAt() latency.
+	 * @return nanoseconds.
+	 */
+	long getClickP99Nanos();
+
+	/**
+	 * Mean number of cells opened per click (flood fill size).
+	 * @return cells per click.
+	 */
+	double getCellsOpenedPerClickMean();
+
+	/**
+	 * Largest flood fill, exact.
+	 * @return cells.
+	 */
+	long getCellsOpenedPerClickMax();
+
+	/**
+	 * Number of successful flags.
+	 * @return count of flags.
+	 */
+	long getFlags();
+
+	/**
+	 * Number of successful un-flags.
+	 * @return count of un-flags.
+	 */
+	long getUnflags();
+
+	/**
+	 * Number of games that ended SOLVED.
+	 * @return count of games.
+	 */
+	long getGamesSolved();
+
+	/**
+	 * Number of games that ended EXPLODED.
+	 * @return count of games.
+	 */
+	long getGamesExploded();
+
+	/**
+	 * Clear every metric.
+	 */
+	void reset();
+}
@@ -0,0 +1,51 @@
+package com.minesweeper;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+/**
+ * Native memory for an OffHeapGame board that is freed as soon as it is closed, using the
+ * incubating foreign memory API. Memory that is never closed is freed by a Cleaner once it is unreachable,
+ * as a direct buffer's would be. Only loaded by OffHeapGame when jdk.incubator.foreign is present
+ * (compile and run with --add-modules jdk.incubator.foreign).
+ */
+final class ForeignCells {
+
+	/**
+	 * Frees the memory of boards that were never closed.
+	 */
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/**
+	 * Scope owning the memory; shared, so the game may be closed from any thread.
+	 */
+	private final ResourceScope scope;
+	/**
+	 * Buffer view of the memory, unusable once the scope is closed.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Allocate zeroed native memory.
+	 * @param size number of bytes.
+	 */
+	ForeignCells(int size){
+		scope = ResourceScope.newSharedScope(CLEANER);
+		buffer = MemorySegment.allocateNative(size, scope).asByteBuffer();
+	}
+
+	/**
+	 * Return the memory as a direct buffer.
+	 * @return the buffer.
+	 */
+	ByteBuffer buffer(){ return buffer; }
+
+	/**
+	 * Free the memory now. Idempotent.
+	 */
+	void close(){
+		if(scope.isAlive()){
+			scope.close();
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package com.minesweeper;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Generates the next few games for the current setting on a background thread, so that
+ * "New Game" takes a ready board instead of building one on the caller's (UI) thread.
+ * Games wait in a bounded queue; take() falls back to building one synchronously when it is empty.
+ * Changing the setting cancels the boards queued for the old one and refills the queue.
+ * Games are numbered in the order take() hands them out, and game n is built from the n-th seed of
+ * the prefetcher's own Random, whichever thread builds it; so a session is reproducible from its seed
+ * and its settings, however the producer's timing falls.
+ * All methods may be called from any thread; close() stops the producer.
+ */
+public class GamePrefetcher implements AutoCloseable {
+
+	/**
+	 * Board setting: a pre-defined level, or CUSTOM with its size.
+	 */
+	private static final class Setting {
+		/**
+		 * Difficulty level.
+		 */
+		final MineSweeper.Level level;
+		/**
+		 * Number of rows, CUSTOM only.
+		 */
+		final int rows;
+		/**
+		 * Number of cols, CUSTOM only.
+		 */
+		final int cols;
+		/**
+		 * Number of mines, CUSTOM only.
+		 */
+		final int mines;
+
+		/**
+		 * Constructor.
+		 * @param level difficulty level.
+		 * @param rows number of rows.
+		 * @param cols number of cols.
+		 * @param mines number of mines.
+		 */
+		Setting(MineSweeper.Level level, int rows, int cols, int mines){
+			this.level = level;
+			this.rows = rows;
+			this.cols = cols;
+			this.mines = mines;
+		}
+
+		/**
+		 * Check whether another setting asks for the same boards.
+		 * @param other the other setting.
+		 * @return true if equal.
+		 */
+		boolean same(Setting other){
+			return level == other.level && rows == other.rows && cols == other.cols && mines == other.mines;
+		}
+
+		/**
+		 * Build a game for this setting.
+		 * @param seed for random numbers.
+		 * @return the game.
+		 */
+		MineSweeper create(int seed){
+			if(level == MineSweeper.Level.CUSTOM){
+				return new MineSweeper(seed, level, rows, cols, mines);
+			}
+			return new MineSweeper(seed, level);
+		}
+	}
+
+	/**
+	 * A queued game, the setting it was built for and its number.
+	 */
+	private static final class Entry {
+		/**
+		 * Setting the game was built for.
+		 */
+		final Setting setting;
+		/**
+		 * Number of the game, counted by take().
+		 */
+		final long number;
+		/**
+		 * The game.
+		 */
+		final MineSweeper game;
+
+		/**
+		 * Constructor.
+		 * @param setting setting the game was built for.
+		 * @param number number of the game.
+		 * @param game the game.
+		 */
+		Entry(Setting setting, long number, MineSweeper game){
+			this.setting = setting;
+			this.number = number;
+			this.game = game;
+		}
+	}
+
+	/**
+	 * Ready games, oldest first.
+	 */
+	private final ArrayBlockingQueue<Entry> queue;
+	/**
+	 * Source of seeds, only read by seed().
+	 */
+	private final Random seeds;
+	/**
+	 * Seeds drawn so far, seed n at index n.
+	 */
+	private int[] drawn = new int[16];
+	/**
+	 * Number of seeds drawn.
+	 */
+	private int drawnCount;
+	/**
+	 * Number of games handed out by take(), which is also the number of the next one.
+	 */
+	private volatile long taken;
+	/**
+	 * Background producer thread.
+	 */
+	private final Thread producer;
+	/**
+	 * Current setting; queued games for any other setting are stale.
+	 */
+	private volatile Setting setting;
+	/**
+	 * Set by close().
+	 */
+	private volatile boolean closed;
+	/**
+	 * Games taken from the queue.
+	 */
+	private final LongAdder hits = new LongAdder();
+	/**
+	 * Games built synchronously because the queue had none for the current setting.
+	 */
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Create a prefetcher and start its producer thread, initially for the given level.
+	 * Game n is built from the n-th nextInt() of new Random(seed), the seed a single-threaded
+	 * caller of that Random would have used for it.
+	 * @param capacity number of games to keep ready.
+	 * @param seed seed of the game seeds.
+	 * @param level initial level, not CUSTOM.
+	 */
+	public GamePrefetcher(int capacity, long seed, MineSweeper.Level level){
+		if(capacity < 1){
+			throw new IllegalArgumentException("Need room for at least one game!");
+		}
+		if(level == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		MineSweeper.levelSize(level); // Rejects CUSTOM
+		queue = new ArrayBlockingQueue<>(capacity);
+		seeds = new Random(seed);
+		setting = new Setting(level, 0, 0, 0);
+		producer = new Thread(this::produce, "minesweeper-prefetch");
+		producer.setDaemon(true);
+		producer.setPriority(Thread.MIN_PRIORITY);
+		producer.start();
+	}
+
+	/**
+	 * Switch to a pre-defined level. Does nothing if it is the current setting.
+	 * @param level difficulty level, not CUSTOM.
+	 */
+	public void setLevel(MineSweeper.Level level){
+		MineSweeper.levelSize(level); // Rejects CUSTOM
+		change(new Setting(level, 0, 0, 0));
+	}
+
+	/**
+	 * Switch to a customized board. Does nothing if it is the current setting.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 */
+	public void setCustom(int rows, int cols, int mines){
+		if(rows <= 0 || cols <= 0 || mines < 0 || mines > rows * cols){
+			throw new IllegalArgumentException("Invalid board size!");
+		}
+		change(new Setting(MineSweeper.Level.CUSTOM, rows, cols, mines));
+	}
+
+	/**
+	 * Take the next game for the current setting, building it on the calling thread if none is ready.
+	 * @return a new game.
+	 */
+	public synchronized MineSweeper take(){
+		Setting current = setting;
+		long number = taken;
+		taken = number + 1;
+		Entry entry;
+		while((entry = queue.poll()) != null){ // Skip games of an older setting, or built here already
+			if(entry.setting == current && entry.number == number){
+				hits.increment();
+				return entry.game;
+			}
+		}
+		misses.increment();
+		return current.create(seed(number));
+	}
+
+	/**
+	 * Report the number of games ready in the queue.
+	 * @return queue size.
+	 */
+	public int ready(){ return queue.size(); }
+
+	/**
+	 * Report how many games take() found ready.
+	 * @return hit count.
+	 */
+	public long hits(){ return hits.sum(); }
+
+	/**
+	 * Report how many games take() had to build synchronously.
+	 * @return miss count.
+	 */
+	public long misses(){ return misses.sum(); }
+
+	/**
+	 * Stop the producer and drop the queued games. Idempotent.
+	 */
+	@Override
+	public void close(){
+		closed = true;
+		producer.interrupt();
+		queue.clear();
+	}
+
+	/**
+	 * Return the seed of a game, drawing seeds up to it if needed. O(1) amortized, one int kept per game.
+	 * @param number number of the game.
+	 * @return its seed.
+	 */
+	private synchronized int seed(long number){
+		while(drawnCount <= number){
+			if(drawnCount == drawn.length){
+				drawn = Arrays.copyOf(drawn, drawnCount * 2);
+			}
+			drawn[drawnCount++] = seeds.nextInt();
+		}
+		return drawn[(int) number];
+	}
+
+	/**
+	 * Install a new setting, cancelling the games queued and the one being built for the old one.
+	 * @param next the new setting.
+	 */
+	private void change(Setting next){
+		if(next.same(setting)){
+			return;
+		}
+		setting = next;
+		queue.clear();
+		producer.interrupt(); // Wakes the producer if it is blocked on a full queue
+	}
+
+	/**
+	 * Producer loop: build the next games for the current setting and queue them, blocking while the queue is full.
+	 * A new setting, or take() building games itself, moves it on to the next game not yet taken.
+	 */
+	private void produce(){
+		Setting built = null;
+		long number = 0;
+		while(!closed){
+			Setting current = setting;
+			if(current != built){ // Games queued for the old setting were dropped
+				built = current;
+				number = taken;
+			}
+			number = Math.max(number, taken);
+			Entry entry;
+			try {
+				entry = new Entry(current, number, current.create(seed(number)));
+				number++;
+			} catch(RuntimeException e){ // Unusable setting: wait for the next one
+				entry = null;
+			}
+			while(!closed && setting == current){
+				try {
+					if(entry == null){
+						Thread.sleep(Long.MAX_VALUE);
+					} else {
+						queue.put(entry);
+					}
+					break;
+				} catch(InterruptedException e){
+					// Setting changed or closing: checked by the loop
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package com.minesweeper;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+/**
+ * Runs a game on its own thread, so that big reveals never block the UI thread.
+ * The UI thread only enqueues commands; the worker is the single writer of the game. After each
+ * run of commands the worker adds the changed cells to a pending Update and, unless one is already
+ * scheduled, posts a single flush to the UI executor (Platform::runLater for JavaFX). The flush hands
+ * everything collected so far to the listener, so one frame applies any number of changes.
+ * The UI must not touch the game itself while it is owned by the worker; Updates carry cell states.
+ */
+public class GameWorker implements AutoCloseable {
+
+	/**
+	 * Cell state bits: the low bits are the neighbour count (0 for mines).
+	 */
+	public static final int COUNT = 0xFF;
+	/**
+	 * Cell state bit: opened.
+	 */
+	public static final int VISIBLE = 1 << 8;
+	/**
+	 * Cell state bit: flagged.
+	 */
+	public static final int FLAGGED = 1 << 9;
+	/**
+	 * Cell state bit: mine. Only reported for opened mines, and for every mine once the game is over.
+	 */
+	public static final int MINE = 1 << 10;
+
+	/**
+	 * Receives updates on the UI thread.
+	 */
+	public interface Listener {
+		/**
+		 * Apply an update to the display. The update is reused after this returns.
+		 * @param update the changes since the previous update.
+		 */
+		void apply(Update update);
+	}
+
+	/**
+	 * Changes collected by the worker for one UI flush.
+	 */
+	public static final class Update {
+		/**
+		 * Game the changes belong to.
+		 */
+		private MineSweeper game;
+		/**
+		 * Row-major indexes of changed cells, in order.
+		 */
+		private int[] cells = new int[16];
+		/**
+		 * State of each changed cell after the change.
+		 */
+		private int[] states = new int[16];
+		/**
+		 * Number of changed cells.
+		 */
+		private int size;
+		/**
+		 * Game status after the changes.
+		 */
+		private String status;
+		/**
+		 * Mines left after the changes.
+		 */
+		private int mineLeft;
+		/**
+		 * Whether the game is solved.
+		 */
+		private boolean solved;
+		/**
+		 * Whether a mine was opened.
+		 */
+		private boolean exploded;
+
+		/**
+		 * Report the game the update belongs to; updates of a replaced game should be ignored.
+		 * Only its identity and size may be used on the UI thread.
+		 * @return the game.
+		 */
+		public MineSweeper game(){ return game; }
+
+		/**
+		 * Report the number of changed cells.
+		 * @return count, cells may repeat.
+		 */
+		public int size(){ return size; }
+
+		/**
+		 * Report a changed cell.
+		 * @param i change number, from 0 to size() - 1.
+		 * @return row-major index (row * colCount + col).
+		 */
+		public int cell(int i){ return cells[i]; }
+
+		/**
+		 * Report the state of a changed cell.
+		 * @param i change number, from 0 to size() - 1.
+		 * @return COUNT bits plus VISIBLE, FLAGGED and MINE flags.
+		 */
+		public int state(int i){ return states[i]; }
+
+		/**
+		 * Report the game status after the changes.
+		 * @return one of MineSweeper.Status_STRINGS.
+		 */
+		public String status(){ return status; }
+
+		/**
+		 * Report the mines left after the changes.
+		 * @return mine count minus flag count.
+		 */
+		public int mineLeft(){ return mineLeft; }
+
+		/**
+		 * Report whether the game is solved.
+		 * @return true if solved.
+		 */
+		public boolean solved(){ return solved; }
+
+		/**
+		 * Report whether a mine was opened.
+		 * @return true if exploded.
+		 */
+		public boolean exploded(){ return exploded; }
+
+		/**
+		 * Report whether the game is over.
+		 * @return true if solved or exploded.
+		 */
+		public boolean over(){ return solved || exploded; }
+
+		/**
+		 * Take the status of a game, on the worker thread.
+		 * @param from the game.
+		 */
+		private void readStatus(MineSweeper from){
+			game = from;
+			status = from.getStatus();
+			mineLeft = from.mineLeft();
+			solved = from.isSolved();
+			exploded = from.isExploded();
+		}
+
+		/**
+		 * Take the game and status of another update.
+		 * @param other the other update.
+		 */
+		private void copyStatus(Update other){
+			game = other.game;
+			status = other.status;
+			mineLeft = other.mineLeft;
+			solved = other.solved;
+			exploded = other.exploded;
+		}
+
+		/**
+		 * Append a changed cell.
+		 * @param cell row-major index.
+		 * @param state cell state.
+		 */
+		private void add(int cell, int state){
+			if(size == cells.length){
+				cells = Arrays.copyOf(cells, size * 2);
+				states = Arrays.copyOf(states, size * 2);
+			}
+			cells[size] = cell;
+			states[size++] = state;
+		}
+	}
+
+	/**
+	 * Command: new game.
+	 */
+	private static final int NEW = 0;
+	/**
+	 * Command: click.
+	 */
+	private static final int CLICK = 1;
+	/**
+	 * Command: flag.
+	 */
+	private static final int FLAG = 2;
+	/**
+	 * Command: un-flag.
+	 */
+	private static final int UNFLAG = 3;
+	/**
+	 * Command: stop the worker.
+	 */
+	private static final int STOP = 4;
+
+	/**
+	 * A queued command.
+	 */
+	private static final class Command {
+		/**
+		 * NEW, CLICK, FLAG, UNFLAG or STOP.
+		 */
+		final int op;
+		/**
+		 * Row of the cell.
+		 */
+		final int row;
+		/**
+		 * Col of the cell.
+		 */
+		final int col;
+		/**
+		 * Game of a NEW command.
+		 */
+		final MineSweeper game;
+
+		/**
+		 * Constructor.
+		 * @param op opcode.
+		 * @param row row of the cell.
+		 * @param col col of the cell.
+		 * @param game game of a NEW command, null otherwise.
+		 */
+		Command(int op, int row, int col, MineSweeper game){
+			this.op = op;
+			this.row = row;
+			this.col = col;
+			this.game = game;
+		}
+	}
+
+	/**
+	 * Commands waiting for the worker.
+	 */
+	private final LinkedBlockingQueue<Command> commands = new LinkedBlockingQueue<>();
+	/**
+	 * Runs flushes on the UI thread.
+	 */
+	private final Executor ui;
+	/**
+	 * Applies updates on the UI thread.
+	 */
+	private final Listener listener;
+	/**
+	 * Worker thread.
+	 */
+	private final Thread worker;
+	/**
+	 * Whether a flush is posted to the UI executor and has not started yet.
+	 */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	/**
+	 * Guards pending and spare.
+	 */
+	private final Object lock = new Object();
+	/**
+	 * Update being filled by the worker.
+	 */
+	private Update pending = new Update();
+	/**
+	 * Emptied update, handed back to the worker by the next flush.
+	 */
+	private Update spare = new Update();
+	/**
+	 * Game owned by the worker thread.
+	 */
+	private MineSweeper game;
+
+	/**
+	 * Create a worker and start its thread.
+	 * @param ui executor of the UI thread, running one task at a time, e.g. Platform::runLater.
+	 * @param listener applies updates on the UI thread.
+	 */
+	public GameWorker(Executor ui, Listener listener){
+		if(ui == null || listener == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		this.ui = ui;
+		this.listener = listener;
+		worker = new Thread(this::work, "minesweeper-engine");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Hand a new game to the worker. The caller must not use the game afterwards, other than
+	 * comparing it with Update.game() and reading its size.
+	 * @param newGame the game.
+	 */
+	public void newGame(MineSweeper newGame){
+		if(newGame == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		commands.add(new Command(NEW, 0, 0, newGame));
+	}
+
+	/**
+	 * Queue a click, as MineSweeper.clickAt().
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 */
+	public void click(int row, int col){
+		commands.add(new Command(CLICK, row, col, null));
+	}
+
+	/**
+	 * Queue a flag, as MineSweeper.flagAt().
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 */
+	public void flag(int row, int col){
+		commands.add(new Command(FLAG, row, col, null));
+	}
+
+	/**
+	 * Queue an un-flag, as MineSweeper.unFlagAt().
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 */
+	public void unflag(int row, int col){
+		commands.add(new Command(UNFLAG, row, col, null));
+	}
+
+	/**
+	 * Stop the worker once the commands queued so far are done.
+	 */
+	@Override
+	public void close(){
+		commands.add(new Command(STOP, 0, 0, null));
+	}
+
+	/**
+	 * Worker loop: wait for a command, run every command queued by then, publish once.
+	 */
+	private void work(){
+		try {
+			boolean stop = false;
+			while(!stop){
+				Command command = commands.take();
+				do {
+					stop = command.op == STOP;
+					if(!stop){
+						execute(command);
+					}
+				} while(!stop && (command = commands.poll()) != null);
+				if(scheduled.compareAndSet(false, true)){ // Publish what was done, even when stopping
+					ui.execute(this::flush);
+				}
+			}
+		} catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Run one command on the game and add the cells it changed to the pending update.
+	 * @param command the command.
+	 */
+	private void execute(Command command){
+		if(command.op == NEW){
+			if(game != null){
+				game.setChangeTracking(false);
+			}
+			game = command.game;
+			game.setChangeTracking(true);
+			synchronized(lock){
+				pending.size = 0; // Changes of the old game are obsolete
+				pending.readStatus(game);
+			}
+			return;
+		}
+		if(game == null){
+			return;
+		}
+		boolean wasOver = game.isSolved() || game.isExploded();
+		switch(command.op){
+			case CLICK:
+				game.clickAt(command.row, command.col);
+				break;
+			case FLAG:
+				game.flagAt(command.row, command.col);
+				break;
+			default:
+				game.unFlagAt(command.row, command.col);
+		}
+		int[] changed = game.takeChanges();
+		boolean over = game.isSolved() || game.isExploded();
+		synchronized(lock){
+			for(int cell : changed){
+				pending.add(cell, state(game, cell));
+			}
+			if(over && !wasOver){ // Reveal every mine at the end
+				for(int cell = game.nextMine(0); cell >= 0; cell = game.nextMine(cell + 1)){
+					pending.add(cell, state(game, cell));
+				}
+			}
+			pending.readStatus(game);
+		}
+	}
+
+	/**
+	 * Read the display state of a cell, also used by SpectatorHub.
+	 * @param game the game.
+	 * @param cell row-major index.
+	 * @return state bits.
+	 */
+	static int state(MineSweeper game, int cell){
+		int row = cell / game.colCount();
+		int col = cell % game.colCount();
+		boolean visible = game.isVisible(row, col);
+		int state = visible ? VISIBLE : 0;
+		if(game.isFlagged(row, col)){
+			state |= FLAGGED;
+		}
+		if(!game.hasMine(row, col)){
+			return visible ? state | game.getCount(row, col) : state;
+		}
+		return visible || game.isSolved() || game.isExploded() ? state | MINE : state;
+	}
+
+	/**
+	 * UI side: take the pending update, give the worker an empty one, and apply it.
+	 */
+	private void flush(){
+		scheduled.set(false); // Changes added from now on schedule another flush
+		Update update;
+		synchronized(lock){
+			update = pending;
+			pending = spare;
+			pending.copyStatus(update);
+		}
+		listener.apply(update);
+		update.size = 0;
+		synchronized(lock){
+			spare = update;
+		}
+	}
+}
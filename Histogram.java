@@ -0,0 +1,97 @@
+package com.minesweeper;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Lock-free histogram with power-of-two buckets.
+ * Recording is allocation-free; concurrent updates are striped by LongAdder
+ * and only merged when the histogram is read.
+ */
+public class Histogram {
+
+	/**
+	 * Number of buckets, bucket i holds values in [2^(i-1), 2^i).
+	 */
+	private static final int BUCKETS = 64;
+	/**
+	 * Bucket counters.
+	 */
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	/**
+	 * Number of recorded values.
+	 */
+	private final LongAdder count = new LongAdder();
+	/**
+	 * Sum of recorded values.
+	 */
+	private final LongAdder sum = new LongAdder();
+
+	/**
+	 * Constructor. Create empty buckets.
+	 */
+	public Histogram(){
+		for(int i = 0; i < BUCKETS; ++i){
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record one value, O(1). Negative values are recorded as 0.
+	 * @param value the value to record.
+	 */
+	public void record(long value){
+		if(value < 0){
+			value = 0;
+		}
+		buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+		count.increment();
+		sum.add(value);
+	}
+
+	/**
+	 * Number of recorded values.
+	 * @return count of values.
+	 */
+	public long count(){
+		return count.sum();
+	}
+
+	/**
+	 * Mean of recorded values.
+	 * @return mean value, 0 if nothing has been recorded.
+	 */
+	public double mean(){
+		long n = count.sum();
+		return n == 0 ? 0 : (double)sum.sum() / n;
+	}
+
+	/**
+	 * Upper bound of the bucket holding the given percentile, O(buckets).
+	 * @param pct percentile between 0 and 100.
+	 * @return approximate percentile value (within a factor of 2).
+	 */
+	public long percentile(double pct){
+		long n = count.sum();
+		if(n == 0){
+			return 0;
+		}
+		long target = (long)Math.ceil(n * pct / 100.0);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; ++i){
+			seen += buckets[i].sum();
+			if(seen >= target && seen > 0){
+				return i == 0 ? 0 : (1L << i) - 1; // Largest value in bucket i
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * Clear all recorded values.
+	 */
+	public void reset(){
+		for(LongAdder b : buckets){
+			b.reset();
+		}
+		count.reset();
+		sum.reset();
+	}
+}
@@ -0,0 +1,48 @@
+package com.minesweeper;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+/**
+ * Flight recorder event for one initBoard() call (mine placement and neighbour counts).
+ * Disabled by default.
+ */
+@Name("com.minesweeper.InitBoard")
+@Label("Init Board")
+@Category("MineSweeper")
+@Description("Mines were placed and neighbour counts computed")
+@Enabled(false)
+public class InitBoardEvent extends Event {
+
+	/**
+	 * Number of rows.
+	 */
+	@Label("Rows")
+	int rows;
+
+	/**
+	 * Number of columns.
+	 */
+	@Label("Columns")
+	int cols;
+
+	/**
+	 * Number of mines.
+	 */
+	@Label("Mines")
+	int mines;
+
+	/**
+	 * Seed used for mine placement.
+	 */
+	@Label("Seed")
+	long seed;
+
+	/**
+	 * Random cells drawn to place all mines.
+	 */
+	@Label("Placement Attempts")
+	int attempts;
+}
@@ -0,0 +1,502 @@
+package com.minesweeper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+/**
+ * Micro-benchmarks for the engine hot paths.
+ * Run with: java com.minesweeper.MineBench
+ * Each benchmark is warmed up first, then timed; results are printed per operation.
+ */
+public class MineBench {
+
+	/**
+	 * Keeps results alive so the JIT cannot drop the benchmarked work.
+	 */
+	private static long sink;
+
+	/**
+	 * Work to benchmark.
+	 */
+	private interface Work {
+		/**
+		 * Run one repetition.
+		 * @param rep repetition number, usable as a seed.
+		 * @return any value derived from the work.
+		 */
+		long run(int rep);
+	}
+
+	/**
+	 * Warm up, time and print one benchmark.
+	 * @param name benchmark name.
+	 * @param reps repetitions to time.
+	 * @param work the work.
+	 */
+	private static void bench(String name, int reps, Work work){
+		for(int i = 0; i < reps; ++i){ // Warm-up
+			sink += work.run(i);
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < reps; ++i){
+			sink += work.run(reps + i);
+		}
+		double micros = (System.nanoTime() - start) / 1000.0 / reps;
+		System.out.printf("%-56s %12.2f us/op%n", name, micros);
+	}
+
+	/**
+	 * Create a game, HARD if rows is 0, customized otherwise.
+	 * @param seed for random numbers.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 * @return the game.
+	 */
+	private static MineSweeper game(int seed, int rows, int cols, int mines){
+		if(rows == 0){
+			return new MineSweeper(seed, MineSweeper.Level.HARD);
+		}
+		return new MineSweeper(seed, MineSweeper.Level.CUSTOM, rows, cols, mines);
+	}
+
+	/**
+	 * Count neighbour mines of every cell.
+	 * @param game the game.
+	 * @return sum of counts.
+	 */
+	private static long countAll(MineSweeper game){
+		long sum = 0;
+		for(int i = 0; i < game.rowCount(); ++i){
+			for(int j = 0; j < game.colCount(); ++j){
+				sum += game.countNbrMines(i, j);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Click every non-mine cell in row order, which solves the game.
+	 * @param game the game.
+	 * @return sum of click results.
+	 */
+	private static long solve(MineSweeper game){
+		long sum = 0;
+		for(int i = 0; i < game.rowCount(); ++i){
+			for(int j = 0; j < game.colCount(); ++j){
+				if(!game.hasMine(i, j)){
+					sum += game.clickAt(i, j);
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Run the benchmarks for one board shape.
+	 * @param label board label.
+	 * @param reps repetitions.
+	 * @param rows number of rows, 0 for HARD.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 */
+	private static void benchBoard(String label, int reps, int rows, int cols, int mines){
+		bench(label + " new game", reps, rep -> game(rep, rows, cols, mines).rowCount());
+		MineSweeper fixed = game(42, rows, cols, mines);
+		bench(label + " countNbrMines (all cells)", reps, rep -> countAll(fixed));
+		bench(label + " new game + solve", reps, rep -> solve(game(rep, rows, cols, mines)));
+	}
+
+	/**
+	 * Compare the scalar and vector neighbour count kernels on one board shape,
+	 * after checking both against countNbrMines().
+	 * @param label board label.
+	 * @param reps repetitions.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 */
+	private static void benchKernel(String label, int reps, int rows, int cols, int mines){
+		MineSweeper game = new MineSweeper(7, MineSweeper.Level.CUSTOM, rows, cols, mines);
+		int stride = cols + 2;
+		byte[] plane = new byte[(rows + 2) * stride];
+		for(int i = 0; i < rows; ++i){
+			for(int j = 0; j < cols; ++j){
+				plane[(i + 1) * stride + j + 1] = (byte)(game.hasMine(i, j) ? 1 : 0);
+			}
+		}
+		byte[] scalar = new byte[plane.length];
+		byte[] simd = new byte[plane.length];
+		NbrCountKernel.countScalar(plane, cols, scalar, 0, rows);
+		NbrCountKernel.count(plane, cols, simd, 0, rows);
+		for(int i = 0; i < rows; ++i){
+			for(int j = 0; j < cols; ++j){
+				int p = (i + 1) * stride + j + 1;
+				int expected = game.countNbrMines(i, j);
+				if(scalar[p] != simd[p] || (expected >= 0 && expected != scalar[p])){
+					throw new IllegalStateException("Kernel mismatch at (" + i + "," + j + ")!");
+				}
+			}
+		}
+		bench(label + " count kernel, scalar", reps, rep -> {
+			NbrCountKernel.countScalar(plane, cols, scalar, 0, rows);
+			return scalar[stride + 1];
+		});
+		bench(label + " count kernel, " + (NbrCountKernel.vectorAvailable() ? "vector" : "no vector module"), reps, rep -> {
+			NbrCountKernel.count(plane, cols, simd, 0, rows);
+			return simd[stride + 1];
+		});
+	}
+
+	/**
+	 * Time one click that opens a huge zero region: searched breadth first, and listed by the opening index.
+	 * @param label board label.
+	 * @param reps repetitions.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 */
+	private static void benchReveal(String label, int reps, int rows, int cols, int mines){
+		String[] modes = {"breadth-first search", "opening index"};
+		for(int mode = 0; mode < modes.length; ++mode){
+			long total = 0;
+			for(int rep = 0; rep < reps * 2; ++rep){ // First half is warm-up
+				MineSweeper game = new MineSweeper(rep, MineSweeper.Level.CUSTOM, rows, cols, mines);
+				if(mode == 0){
+					game.setBoard(game.getBoard(), mines); // Same board without the opening index
+				}
+				int row = 0;
+				int col = 0;
+				while(game.countNbrMines(row, col) != 0){ // First 0-count cell
+					if(++col == cols){
+						col = 0;
+						row++;
+					}
+				}
+				long start = System.nanoTime();
+				sink += game.clickAt(row, col);
+				if(rep >= reps){
+					total += System.nanoTime() - start;
+				}
+			}
+			System.out.printf("%-56s %12.2f us/op%n", label + " zero-region click, " + modes[mode], total / 1000.0 / reps);
+		}
+	}
+
+	/**
+	 * Time board generation plus analysis of HARD boards, on one thread and in parallel.
+	 * @param boards number of boards per batch.
+	 */
+	private static void benchAnalyzer(int boards){
+		BoardAnalyzer analyzer = new BoardAnalyzer(4);
+		bench("HARD generate layout + analyze, one thread", boards,
+			rep -> analyzer.analyze(BoardLayout.generate(rep, MineSweeper.Level.HARD), rep).timesStuck());
+		int[] seeds = new int[boards];
+		for(int i = 0; i < boards; ++i){
+			seeds[i] = i;
+		}
+		bench("HARD generate layout + analyze, parallel batch", 4,
+			rep -> BoardAnalyzer.analyzeSeeds(seeds, MineSweeper.Level.HARD, 4).length);
+	}
+
+	/**
+	 * Build a submission for a layout: click every hidden safe cell, starting at a given cell and
+	 * wrapping around in row order. A losing submission clicks a mine half way instead.
+	 * @param layout the board.
+	 * @param start row-major index of the first cell to try.
+	 * @param lose whether to click a mine half way.
+	 * @return (op, row, col) triples.
+	 */
+	private static int[] submission(BoardLayout layout, int start, boolean lose){
+		MineSweeper game = new MineSweeper(layout);
+		int cols = layout.colCount();
+		int cells = layout.rowCount() * cols;
+		int[] moves = new int[3 * cells];
+		int n = 0;
+		for(int k = 0; k < cells && !game.isSolved() && !game.isExploded(); ++k){
+			boolean mine = lose && k == cells / 2;
+			int idx = mine ? game.nextMine(0) : (start + k) % cells;
+			int row = idx / cols;
+			int col = idx % cols;
+			if(!mine && (game.hasMine(row, col) || game.isVisible(row, col))){
+				continue;
+			}
+			moves[n++] = MineSweeper.OP_CLICK;
+			moves[n++] = row;
+			moves[n++] = col;
+			game.clickAt(row, col);
+		}
+		return Arrays.copyOf(moves, n);
+	}
+
+	/**
+	 * Time replay verification of daily challenge submissions, one at a time and as a parallel batch.
+	 * Three quarters of the submissions solve the board, the rest click a mine.
+	 * @param count number of submissions.
+	 */
+	private static void benchReplay(int count){
+		int seed = 20261019;
+		ReplayVerifier verifier = new ReplayVerifier(seed, MineSweeper.Level.HARD);
+		BoardLayout layout = BoardLayout.generate(seed, MineSweeper.Level.HARD);
+		int[][] submissions = new int[count][];
+		for(int i = 0; i < count; ++i){
+			submissions[i] = submission(layout, i * 7, i % 4 == 3);
+		}
+		int accepted = 0;
+		for(ReplayVerifier.Verdict verdict : verifier.verifyAll(submissions)){
+			accepted += verdict.accepted() ? 1 : 0;
+		}
+		if(accepted != count - count / 4){
+			throw new IllegalStateException("Replay accepted " + accepted + " of " + count + "!");
+		}
+		bench("HARD replay verify, one thread", count, rep -> verifier.verify(submissions[rep % count]).moves());
+		for(int rep = 0; rep < 3; ++rep){ // Warm-up
+			sink += verifier.verifyAll(submissions).length;
+		}
+		long start = System.nanoTime();
+		sink += verifier.verifyAll(submissions).length;
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-56s %12.0f subs/s%n", "HARD replay verify, parallel batch of " + count, count / seconds);
+	}
+
+	/**
+	 * Time the headless CLI on an in-memory script of mixed commands, a new HARD game every 1000.
+	 * @param commands number of commands in the script.
+	 * @throws IOException never, the streams are in memory.
+	 */
+	private static void benchCli(int commands) throws IOException {
+		StringBuilder script = new StringBuilder();
+		Random random = new Random(5);
+		for(int i = 0; i < commands; ++i){
+			int row = random.nextInt(16);
+			int col = random.nextInt(30);
+			switch(i % 1000 == 0 ? -1 : random.nextInt(4)){
+				case -1:
+					script.append("new HARD ").append(i).append('\n');
+					break;
+				case 0:
+					script.append("click ").append(row).append(' ').append(col).append('\n');
+					break;
+				case 1:
+					script.append("flag ").append(row).append(' ').append(col).append('\n');
+					break;
+				case 2:
+					script.append("unflag ").append(row).append(' ').append(col).append('\n');
+					break;
+				default:
+					script.append("status\n");
+			}
+		}
+		byte[] bytes = script.toString().getBytes(StandardCharsets.US_ASCII);
+		for(int rep = 0; rep < 3; ++rep){ // Warm-up
+			sink += new MineCLI(new ByteArrayInputStream(bytes), OutputStream.nullOutputStream()).run();
+		}
+		long start = System.nanoTime();
+		sink += new MineCLI(new ByteArrayInputStream(bytes), OutputStream.nullOutputStream()).run();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%-56s %12.0f cmds/s%n", "CLI mixed HARD script of " + commands + " commands", commands / seconds);
+	}
+
+	/**
+	 * Compare BoardCodec snapshots with the plain format (the three bitsets, one bit per cell) on a game
+	 * played partway: some openings clicked and a few mines flagged. Prints sizes, then encode and decode times.
+	 * @param label board label.
+	 * @param reps repetitions.
+	 * @param rows number of rows, 0 for HARD.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 * @throws IOException never, the streams are in memory.
+	 */
+	private static void benchCodec(String label, int reps, int rows, int cols, int mines) throws IOException {
+		MineSweeper game = game(7, rows, cols, mines);
+		Random random = new Random(7);
+		int cells = game.rowCount() * game.colCount();
+		for(int i = 0; i < 40; ++i){
+			int idx = random.nextInt(cells);
+			int row = idx / game.colCount();
+			int col = idx % game.colCount();
+			if(game.hasMine(row, col)){
+				game.flagAt(row, col);
+			} else {
+				game.clickAt(row, col);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BoardCodec.write(game, out);
+		byte[] snapshot = out.toByteArray();
+		MineSweeper copy = BoardCodec.readGame(new ByteArrayInputStream(snapshot));
+		if(!Arrays.equals(copy.getVisibleBits(), game.getVisibleBits()) || !Arrays.equals(copy.getFlagBits(), game.getFlagBits())){
+			throw new IllegalStateException("Snapshot does not restore the game!");
+		}
+		int plainBytes = 3 * Bits.words(cells) * 8;
+		System.out.printf("%-56s %12d bytes (plain %d, %.1f%%)%n", label + " snapshot", snapshot.length, plainBytes,
+			100.0 * snapshot.length / plainBytes);
+		ByteBuffer plain = ByteBuffer.allocate(plainBytes);
+		bench(label + " plain bitsets encode", reps, rep -> {
+			plain.clear();
+			for(long[] bits : new long[][] {game.getMineBits(), game.getFlagBits(), game.getVisibleBits()}){
+				for(long word : bits){
+					plain.putLong(word);
+				}
+			}
+			return plain.position();
+		});
+		bench(label + " plain bitsets decode", reps, rep -> {
+			plain.flip();
+			long[] bits = new long[Bits.words(cells)];
+			long sum = 0;
+			for(int section = 0; section < 3; ++section){
+				for(int w = 0; w < bits.length; ++w){
+					bits[w] = plain.getLong();
+				}
+				sum += Bits.count(bits);
+			}
+			plain.position(plainBytes);
+			return sum;
+		});
+		bench(label + " BoardCodec encode", reps, rep -> {
+			out.reset();
+			try {
+				return BoardCodec.write(game, out);
+			} catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+		});
+		long[] count = new long[1];
+		BoardCodec.Visitor counter = new BoardCodec.Visitor(){
+			@Override
+			public void board(MineSweeper.Level level, int r, int c){ }
+
+			@Override
+			public void section(int section, int encoding, int n){ }
+
+			@Override
+			public void cell(int section, int index){ count[0]++; }
+
+			@Override
+			public void run(int section, int from, int to){ count[0] += to - from; }
+		};
+		bench(label + " BoardCodec decode (visit cells)", reps, rep -> {
+			try {
+				BoardCodec.read(new ByteArrayInputStream(snapshot), counter);
+			} catch(IOException e){
+				throw new UncheckedIOException(e);
+			}
+			return count[0];
+		});
+	}
+
+	/**
+	 * Time moves broadcast through a SpectatorHub with few and with many subscribed spectators,
+	 * then how fast one spectator catches up. The move cost should not grow with the spectators.
+	 * @param moves number of flag/unflag moves per timing.
+	 */
+	private static void benchSpectators(int moves){
+		for(int spectators : new int[] {1, 10000}){
+			MineSweeper game = new MineSweeper(11, MineSweeper.Level.CUSTOM, 300, 300, 13500);
+			SpectatorHub hub = new SpectatorHub(game, 256, 1024);
+			SpectatorHub.Spectator[] watching = new SpectatorHub.Spectator[spectators];
+			for(int i = 0; i < spectators; ++i){
+				watching[i] = hub.subscribe();
+			}
+			bench("CUSTOM 300x300 broadcast move, " + spectators + " spectators", moves, rep -> {
+				int row = rep * 7 % 300;
+				int col = rep * 13 % 300;
+				return (rep & 1) == 0 ? (hub.flag(row, col) ? 1 : 0) : (hub.unflag(row, col) ? 1 : 0);
+			});
+			SpectatorHub.Mirror mirror = new SpectatorHub.Mirror();
+			long start = System.nanoTime();
+			int frames = 0;
+			for(byte[] frame = watching[0].poll(); frame != null; frame = watching[0].poll()){
+				mirror.apply(frame);
+				frames++;
+			}
+			double micros = (System.nanoTime() - start) / 1000.0 / frames;
+			System.out.printf("%-56s %12.2f us/op%n", "CUSTOM 300x300 spectator catch-up, per frame (" + frames + " frames)", micros);
+			sink += mirror.mineLeft();
+		}
+	}
+
+	/**
+	 * Time self-play export: each thread plays HARD games by clicking random hidden cells and records
+	 * every position before its move, into shards of 100000 records in a temporary directory.
+	 * @param threads number of simulator threads.
+	 * @param games games per thread.
+	 * @throws IOException if the shards cannot be written.
+	 */
+	private static void benchExport(int threads, int games) throws IOException {
+		Path dir = Files.createTempDirectory("minebench");
+		TrainingExporter exporter = new TrainingExporter(dir, "selfplay", 16, 30, 100000);
+		Thread[] simulators = new Thread[threads];
+		long start = System.nanoTime();
+		for(int t = 0; t < threads; ++t){
+			int id = t;
+			simulators[t] = new Thread(() -> {
+				TrainingExporter.Writer writer = exporter.writer();
+				Random random = new Random(id);
+				for(int g = 0; g < games; ++g){
+					MineSweeper game = new MineSweeper(id * games + g, MineSweeper.Level.HARD);
+					while(!game.isSolved() && !game.isExploded()){
+						int hidden = game.nextHidden(random.nextInt(16 * 30));
+						if(hidden < 0){
+							hidden = game.nextHidden(0);
+						}
+						writer.record(game, MineSweeper.OP_CLICK, hidden / 30, hidden % 30);
+						game.clickAt(hidden / 30, hidden % 30);
+					}
+				}
+			});
+			simulators[t].start();
+		}
+		for(Thread simulator : simulators){
+			try {
+				simulator.join();
+			} catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		exporter.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long records = exporter.records();
+		System.out.printf("%-56s %12.0f positions/min%n", "HARD self-play export, " + threads + " threads, " + records + " positions",
+			records * 60 / seconds);
+		for(long shard = 0; shard * 100000 < records; ++shard){
+			Files.delete(exporter.shardPath(shard));
+		}
+		Files.delete(dir);
+	}
+
+	/**
+	 * Main method.
+	 * @param args arguments (not used).
+	 * @throws IOException if benchExport() cannot write its shards.
+	 */
+	public static void main(String[] args) throws IOException {
+		EngineMetrics.setEnabled(false);
+		benchBoard("HARD 16x30/99", 20000, 0, 0, 0);
+		benchBoard("CUSTOM 300x300/13500", 40, 300, 300, 13500);
+		benchBoard("CUSTOM 1000x1000/150000", 5, 1000, 1000, 150000);
+		benchKernel("CUSTOM 16x30/99", 200000, 16, 30, 99);
+		benchKernel("CUSTOM 300x300/13500", 2000, 300, 300, 13500);
+		benchKernel("CUSTOM 1000x1000/150000", 200, 1000, 1000, 150000);
+		benchKernel("CUSTOM 3000x3000/1350000", 20, 3000, 3000, 1350000);
+		benchAnalyzer(20000);
+		benchReveal("CUSTOM 2000x2000/2000", 3, 2000, 2000, 2000);
+		benchReplay(10000);
+		benchCli(2000000);
+		benchCodec("HARD 16x30/99", 200000, 0, 0, 0);
+		benchCodec("CUSTOM 1000x1000/150000", 200, 1000, 1000, 150000);
+		benchCodec("CUSTOM 3000x3000/30000", 20, 3000, 3000, 30000);
+		benchSpectators(100000);
+		benchExport(Runtime.getRuntime().availableProcessors(), 20000);
+		System.out.println("(sink " + sink + ")");
+	}
+}
@@ -0,0 +1,532 @@
+package com.minesweeper;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+/**
+ * Headless, scriptable front end: reads one command per line and writes one response per command.
+ * Run with: java com.minesweeper.MineCLI [script], reading stdin when no script is given.
+ * <pre>
+ * new LEVEL seed                      -&gt; new rows cols mines
+ * new CUSTOM seed rows cols mines     -&gt; new rows cols mines  (0 &lt;= mines &lt; rows*cols &lt;= 2^20)
+ * click r c                           -&gt; click result        (as clickAt(): -2, -1 or the count)
+ * flag r c / unflag r c               -&gt; flag 1|0 / unflag 1|0
+ * status                              -&gt; status STATUS minesLeft openCells
+ * board                               -&gt; board rows cols, then one line per row of
+ *                                        ? hidden, F flagged, X mine, 0-8 count
+ * </pre>
+ * Blank lines and lines starting with # are skipped; errors are answered with "error reason".
+ * Input and output go through fixed byte buffers and commands are parsed in place, so no objects
+ * are created per line. Output is flushed when the buffer fills, before blocking on input, and at the end.
+ */
+public class MineCLI {
+
+	/**
+	 * Size of the input and output buffers.
+	 */
+	private static final int BUFFER = 1 << 16;
+	/**
+	 * Longest token kept; longer tokens are truncated and so never match.
+	 */
+	private static final int MAX_TOKEN = 32;
+	/**
+	 * Most cells a CUSTOM board may have, so a command cannot exhaust the heap.
+	 */
+	private static final int MAX_CELLS = 1 << 20;
+
+	/**
+	 * Command word: new.
+	 */
+	private static final byte[] NEW = bytes("new");
+	/**
+	 * Command word: click.
+	 */
+	private static final byte[] CLICK = bytes("click");
+	/**
+	 * Command word: flag.
+	 */
+	private static final byte[] FLAG = bytes("flag");
+	/**
+	 * Command word: unflag.
+	 */
+	private static final byte[] UNFLAG = bytes("unflag");
+	/**
+	 * Command word: status.
+	 */
+	private static final byte[] STATUS = bytes("status");
+	/**
+	 * Command word: board.
+	 */
+	private static final byte[] BOARD = bytes("board");
+	/**
+	 * Error response: unknown command word.
+	 */
+	private static final byte[] ERR_COMMAND = bytes("error unknown command");
+	/**
+	 * Error response: missing, malformed or extra arguments.
+	 */
+	private static final byte[] ERR_ARGS = bytes("error bad arguments");
+	/**
+	 * Error response: no game has been started.
+	 */
+	private static final byte[] ERR_GAME = bytes("error no game");
+	/**
+	 * Levels, cached since values() copies the array.
+	 */
+	private static final MineSweeper.Level[] LEVELS = MineSweeper.Level.values();
+	/**
+	 * Level names, indexed like LEVELS.
+	 */
+	private static final byte[][] LEVEL_NAMES = new byte[LEVELS.length][];
+	/**
+	 * Status names, indexed like MineSweeper.Status_STRINGS.
+	 */
+	private static final byte[][] STATUS_NAMES = new byte[MineSweeper.Status_STRINGS.length][];
+	static {
+		for(int i = 0; i < LEVELS.length; ++i){
+			LEVEL_NAMES[i] = bytes(LEVELS[i].name());
+		}
+		for(int i = 0; i < STATUS_NAMES.length; ++i){
+			STATUS_NAMES[i] = bytes(MineSweeper.Status_STRINGS[i]);
+		}
+	}
+	/**
+	 * Returned by number() for a token that is not an int.
+	 */
+	private static final long NAN = Long.MIN_VALUE;
+
+	/**
+	 * Command source.
+	 */
+	private final InputStream in;
+	/**
+	 * Response sink.
+	 */
+	private final OutputStream out;
+	/**
+	 * Input buffer.
+	 */
+	private final byte[] inBuf = new byte[BUFFER];
+	/**
+	 * Next unread byte in inBuf.
+	 */
+	private int inPos;
+	/**
+	 * Number of valid bytes in inBuf.
+	 */
+	private int inLen;
+	/**
+	 * Whether the end of the input was reached; inPos == inLen from then on.
+	 */
+	private boolean eof;
+	/**
+	 * Output buffer.
+	 */
+	private final byte[] outBuf = new byte[BUFFER];
+	/**
+	 * Number of bytes waiting in outBuf.
+	 */
+	private int outLen;
+	/**
+	 * Current token.
+	 */
+	private final byte[] token = new byte[MAX_TOKEN];
+	/**
+	 * Length of the current token.
+	 */
+	private int tokenLen;
+	/**
+	 * Current game, null before the first new command.
+	 */
+	private MineSweeper game;
+
+	/**
+	 * Constructor.
+	 * @param in command source.
+	 * @param out response sink, not closed by run().
+	 */
+	public MineCLI(InputStream in, OutputStream out){
+		if(in == null || out == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		this.in = in;
+		this.out = out;
+	}
+
+	/**
+	 * Execute commands until the end of the input, then flush the responses.
+	 * @return number of commands executed, skipped lines not included.
+	 * @throws IOException if reading or writing fails.
+	 */
+	public long run() throws IOException {
+		long commands = 0;
+		while(peek() >= 0){
+			if(nextToken() && token[0] != '#'){
+				execute();
+				commands++;
+			}
+			skipLine();
+		}
+		flush();
+		return commands;
+	}
+
+	/**
+	 * Report the current game.
+	 * @return the game, null before the first new command.
+	 */
+	public MineSweeper getGame(){ return game; }
+
+	/**
+	 * Execute the command in token, reading its arguments from the rest of the line.
+	 * @throws IOException if reading or writing fails.
+	 */
+	private void execute() throws IOException {
+		if(is(NEW)){
+			newGame();
+			return;
+		}
+		byte[] word;
+		if(is(CLICK)){
+			word = CLICK;
+		} else if(is(FLAG)){
+			word = FLAG;
+		} else if(is(UNFLAG)){
+			word = UNFLAG;
+		} else if(is(STATUS)){
+			word = STATUS;
+		} else if(is(BOARD)){
+			word = BOARD;
+		} else {
+			line(ERR_COMMAND);
+			return;
+		}
+		boolean cellCommand = word != STATUS && word != BOARD;
+		long row = cellCommand ? number() : 0;
+		long col = cellCommand ? number() : 0;
+		if(row == NAN || col == NAN || nextToken()){
+			line(ERR_ARGS);
+			return;
+		}
+		if(game == null){
+			line(ERR_GAME);
+			return;
+		}
+		write(word);
+		write((byte) ' ');
+		if(word == CLICK){
+			writeInt(game.clickAt((int) row, (int) col));
+		} else if(word == FLAG){
+			writeInt(game.flagAt((int) row, (int) col) ? 1 : 0);
+		} else if(word == UNFLAG){
+			writeInt(game.unFlagAt((int) row, (int) col) ? 1 : 0);
+		} else if(word == STATUS){
+			writeStatus();
+		} else {
+			writeBoard();
+			return;
+		}
+		write((byte) '\n');
+	}
+
+	/**
+	 * Execute a new command: new LEVEL seed, or new CUSTOM seed rows cols mines.
+	 * @throws IOException if writing fails.
+	 */
+	private void newGame() throws IOException {
+		int level = -1;
+		if(nextToken()){
+			for(int i = 0; i < LEVELS.length; ++i){
+				if(is(LEVEL_NAMES[i])){
+					level = i;
+				}
+			}
+		}
+		long seed = number();
+		boolean custom = level >= 0 && LEVELS[level] == MineSweeper.Level.CUSTOM;
+		long rows = custom ? number() : 0;
+		long cols = custom ? number() : 0;
+		long mines = custom ? number() : 0;
+		if(level < 0 || seed == NAN || rows == NAN || cols == NAN || mines == NAN || nextToken()){
+			line(ERR_ARGS);
+			return;
+		}
+		if(custom && (rows <= 0 || cols <= 0 || rows * cols > MAX_CELLS || mines < 0 || mines >= rows * cols)){
+			line(ERR_ARGS); // At least one safe cell, or mine placement never ends
+			return;
+		}
+		MineSweeper created;
+		try {
+			created = custom
+				? new MineSweeper((int) seed, LEVELS[level], (int) rows, (int) cols, (int) mines)
+				: new MineSweeper((int) seed, LEVELS[level]);
+		} catch(IllegalArgumentException e){
+			line(ERR_ARGS);
+			return;
+		}
+		game = created;
+		write(NEW);
+		write((byte) ' ');
+		writeInt(game.rowCount());
+		write((byte) ' ');
+		writeInt(game.colCount());
+		write((byte) ' ');
+		writeInt(game.mineLeft());
+		write((byte) '\n');
+	}
+
+	/**
+	 * Write the status fields: status name, mines left and number of open cells.
+	 * @throws IOException if writing fails.
+	 */
+	private void writeStatus() throws IOException {
+		String status = game.getStatus();
+		for(int i = 0; i < STATUS_NAMES.length; ++i){
+			if(MineSweeper.Status_STRINGS[i].equals(status)){
+				write(STATUS_NAMES[i]);
+			}
+		}
+		write((byte) ' ');
+		writeInt(game.mineLeft());
+		write((byte) ' ');
+		writeInt(game.visibleCount());
+	}
+
+	/**
+	 * Write the board size line and one line per row.
+	 * @throws IOException if writing fails.
+	 */
+	private void writeBoard() throws IOException {
+		int rows = game.rowCount();
+		int cols = game.colCount();
+		writeInt(rows);
+		write((byte) ' ');
+		writeInt(cols);
+		write((byte) '\n');
+		for(int i = 0; i < rows; ++i){
+			for(int j = 0; j < cols; ++j){
+				byte c;
+				if(game.isFlagged(i, j)){
+					c = 'F';
+				} else if(!game.isVisible(i, j)){
+					c = '?';
+				} else if(game.hasMine(i, j)){
+					c = 'X';
+				} else {
+					c = (byte) ('0' + game.countNbrMines(i, j));
+				}
+				write(c);
+			}
+			write((byte) '\n');
+		}
+	}
+
+	//******************************************************
+	//*******          Input parsing helpers         *******
+	//******************************************************
+
+	/**
+	 * Look at the next input byte without consuming it, refilling the buffer as needed.
+	 * Pending output is flushed before a read that may block, so that request/response
+	 * drivers on a pipe see every answer.
+	 * @return the byte, -1 at the end of the input.
+	 * @throws IOException if reading fails.
+	 */
+	private int peek() throws IOException {
+		while(inPos == inLen){
+			if(eof){
+				return -1;
+			}
+			if(outLen > 0 && in.available() <= 0){
+				flush();
+			}
+			int n = in.read(inBuf, 0, BUFFER);
+			inPos = 0;
+			inLen = Math.max(n, 0);
+			eof = n < 0; // Sticky: later calls return -1 without reading again
+		}
+		return inBuf[inPos];
+	}
+
+	/**
+	 * Read the next token of the current line into token.
+	 * @return true if a token was read, false at the end of the line.
+	 * @throws IOException if reading fails.
+	 */
+	private boolean nextToken() throws IOException {
+		int c = peek();
+		while(c == ' ' || c == '\t' || c == '\r'){
+			inPos++;
+			c = peek();
+		}
+		tokenLen = 0;
+		while(c > ' '){
+			if(tokenLen < MAX_TOKEN){
+				token[tokenLen] = (byte) c;
+			}
+			tokenLen++;
+			inPos++;
+			c = peek();
+		}
+		return tokenLen > 0;
+	}
+
+	/**
+	 * Skip the rest of the current line, newline included.
+	 * @throws IOException if reading fails.
+	 */
+	private void skipLine() throws IOException {
+		int c;
+		while((c = peek()) >= 0){
+			inPos++;
+			if(c == '\n'){
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Check whether the current token is a given word.
+	 * @param word the word.
+	 * @return true if they match.
+	 */
+	private boolean is(byte[] word){
+		if(tokenLen != word.length){
+			return false;
+		}
+		for(int i = 0; i < tokenLen; ++i){
+			if(token[i] != word[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read the next token as a decimal int.
+	 * @return the value, NAN if the token is missing, malformed or out of int range.
+	 * @throws IOException if reading fails.
+	 */
+	private long number() throws IOException {
+		if(!nextToken() || tokenLen > 11){
+			return NAN;
+		}
+		int i = token[0] == '-' ? 1 : 0;
+		if(i == tokenLen){
+			return NAN;
+		}
+		long value = 0;
+		for(; i < tokenLen; ++i){
+			if(token[i] < '0' || token[i] > '9'){
+				return NAN;
+			}
+			value = value * 10 + token[i] - '0';
+		}
+		value = token[0] == '-' ? -value : value;
+		return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? NAN : value;
+	}
+
+	//******************************************************
+	//*******          Output writing helpers        *******
+	//******************************************************
+
+	/**
+	 * Buffer one byte.
+	 * @param b the byte.
+	 * @throws IOException if flushing fails.
+	 */
+	private void write(byte b) throws IOException {
+		if(outLen == BUFFER){
+			flush();
+		}
+		outBuf[outLen++] = b;
+	}
+
+	/**
+	 * Buffer some bytes.
+	 * @param bytes the bytes.
+	 * @throws IOException if flushing fails.
+	 */
+	private void write(byte[] bytes) throws IOException {
+		if(outLen + bytes.length > BUFFER){
+			flush();
+		}
+		System.arraycopy(bytes, 0, outBuf, outLen, bytes.length);
+		outLen += bytes.length;
+	}
+
+	/**
+	 * Buffer a whole response line.
+	 * @param bytes the line without its newline.
+	 * @throws IOException if flushing fails.
+	 */
+	private void line(byte[] bytes) throws IOException {
+		write(bytes);
+		write((byte) '\n');
+	}
+
+	/**
+	 * Buffer an int in decimal.
+	 * @param value the value.
+	 * @throws IOException if flushing fails.
+	 */
+	private void writeInt(int value) throws IOException {
+		if(outLen + 11 > BUFFER){
+			flush();
+		}
+		long v = value;
+		if(v < 0){
+			outBuf[outLen++] = '-';
+			v = -v;
+		}
+		int digits = 1;
+		for(long t = v; t >= 10; t /= 10){
+			digits++;
+		}
+		for(int i = outLen + digits - 1; i >= outLen; --i){
+			outBuf[i] = (byte) ('0' + v % 10);
+			v /= 10;
+		}
+		outLen += digits;
+	}
+
+	/**
+	 * Write out the buffered responses.
+	 * @throws IOException if writing fails.
+	 */
+	private void flush() throws IOException {
+		out.write(outBuf, 0, outLen);
+		out.flush();
+		outLen = 0;
+	}
+
+	/**
+	 * ASCII bytes of a string.
+	 * @param s the string.
+	 * @return its bytes.
+	 */
+	private static byte[] bytes(String s){
+		return s.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Main method: run the commands of a script file, or of stdin if no file is given.
+	 * Engine metrics are published over JMX so that load tests can watch the run.
+	 * @param args optional script path.
+	 * @throws IOException if reading or writing fails.
+	 */
+	public static void main(String[] args) throws IOException {
+		EngineMetrics.register();
+		OutputStream out = new FileOutputStream(FileDescriptor.out);
+		if(args.length > 0){
+			try(InputStream in = new FileInputStream(args[0])){
+				new MineCLI(in, out).run();
+			}
+		} else {
+			new MineCLI(new FileInputStream(FileDescriptor.in), out).run();
+		}
+	}
+}
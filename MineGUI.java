@@ -1,7 +1,9 @@
 package com.minesweeper;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
+import javafx.scene.Node;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
@@ -9,7 +11,6 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 
-import java.util.Random;
 
 import com.minesweeper.MineSweeper.Level;
 
@@ -47,9 +48,24 @@ public class MineGUI extends Application{
 	private MenuBar menuBar;
 	
 	/**
-	 * Minesweeper game to display.
+	 * Minesweeper game to display, owned by the worker once started.
 	 */  
 	private MineSweeper game;
+
+	/**
+	 * Runs the game off the JavaFX application thread.
+	 */  
+	private GameWorker worker;
+
+	/**
+	 * Last known state of each cell, in GameWorker state bits.
+	 */  
+	private int[] view;
+
+	/**
+	 * Mines left when the current game started.
+	 */  
+	private int startMines;
 	
 	
 	/**
@@ -58,9 +74,9 @@ public class MineGUI extends Application{
 	private MineSweeper.Level level;
 	
 	/**
-	 * Random number generator used to create minesweeper games.
+	 * Builds the next games for the current setting in the background.
 	 */  
-	private Random random;
+	private GamePrefetcher prefetcher;
 
 	/**
 	 * Number of rows for a customized game.
@@ -95,9 +111,30 @@ public class MineGUI extends Application{
 	 */
 	@Override
 	public void init(){
-		random = new Random(10);
+		EngineMetrics.register();
 		level = MineSweeper.Level.TINY;
-		game = new MineSweeper(random.nextInt(),level);
+		prefetcher = new GamePrefetcher(3, 10, level); // Same games as seeding one Random(10)
+		worker = new GameWorker(Platform::runLater, this::applyUpdate);
+		newGame();
+	}
+
+	/**
+	 * The method to stop background work when the application exits.
+	 */
+	@Override
+	public void stop(){
+		prefetcher.close();
+		worker.close();
+	}
+
+	/**
+	 * The method to take the next game and hand it to the worker.
+	 */
+	private void newGame(){
+		game = prefetcher.take();
+		view = new int[game.rowCount() * game.colCount()];
+		startMines = game.mineLeft();
+		worker.newGame(game);
 	}
 
 	
@@ -126,59 +163,41 @@ public class MineGUI extends Application{
 				button.setMinWidth(30);
 				final int rowV = row;
 				final int colV = col;
+				final int pos = col + row * game.colCount();
 				button.setOnMousePressed(
 					mouseEvent -> {
 						//left click: click/open
 						if (mouseEvent.isPrimaryButtonDown()){
-							if (game.isFlagged(rowV, colV)){
+							if ((view[pos] & GameWorker.FLAGGED) != 0){
 								button.setSelected(true);
 								return;
 							}
 							
-							if (game.isVisible(rowV, colV)){
+							if ((view[pos] & GameWorker.VISIBLE) != 0){
 								button.setSelected(false);
 								return;
 							}
 							
-							final int count = game.clickAt(rowV, colV);
-							if (count>0){
-								button.setText(count+""); //nbr count>0
-							}
-							if (count>=0){
-								button.setSelected(false);
-								//button.setDisable(true);
-							}
-							
-							if (count == -1){
-								button.setText("X"); //exploded
-								button.setTextFill(Color.RED);
-								button.setStyle("-fx-background-color: coral");
-							}
-							
-							if (count == 0){
-								//need to repaint some nbr buttons
-								updateButtons(rowV, colV);
-							}
-							
-							//otherwise no button change
-							updateStatus();
+							worker.click(rowV, colV); //buttons are repainted by applyUpdate()
 							
 						}else if (mouseEvent.isSecondaryButtonDown()){
 							//right click: flag or unflag
 							
-							if (game.isVisible(rowV,colV))
+							if ((view[pos] & GameWorker.VISIBLE) != 0)
 								return;
 							
-							if (game.isFlagged(rowV, colV)){
-								game.unFlagAt(rowV, colV);
+							//show the flag at once, the worker confirms it
+							if ((view[pos] & GameWorker.FLAGGED) != 0){
+								worker.unflag(rowV, colV);
+								view[pos] &= ~GameWorker.FLAGGED;
 								button.setText(" ");
 							}
 							else{
-								game.flagAt(rowV,colV);
+								worker.flag(rowV,colV);
+								view[pos] |= GameWorker.FLAGGED;
 								button.setText("F");
 								button.setSelected(false);
 							}
-							updateStatus();
 						}
 
 					}
@@ -186,9 +205,9 @@ public class MineGUI extends Application{
 				
 				button.setOnMouseReleased(
 					mouseEvent -> {
-						if (game.isVisible(rowV, colV))
+						if ((view[pos] & GameWorker.VISIBLE) != 0)
 							button.setSelected(true);
-						if (game.isFlagged(rowV, colV))
+						if ((view[pos] & GameWorker.FLAGGED) != 0)
 							button.setSelected(false);
 					}
 				);
@@ -204,7 +223,7 @@ public class MineGUI extends Application{
 		statusLabel.setFont(font);
 		
 		//add mine count
-		mineCountLabel = new Label("MINES: "+game.mineLeft());
+		mineCountLabel = new Label("MINES: "+startMines);
 		mineCountLabel.setFont(font);
 			 
 		mainPane.getChildren().addAll(menuBar, wrapperPane,statusLabel, mineCountLabel);
@@ -223,10 +242,7 @@ public class MineGUI extends Application{
 		Menu newGame = new Menu("New Game");
 		MenuItem repeat = new MenuItem("New Game (Current Setting)");
 		repeat.setOnAction(e ->{
-			if (level!= MineSweeper.Level.CUSTOM)
-				game = new MineSweeper(random.nextInt(),level);
-			else
-				game = new MineSweeper(random.nextInt(),level,customRow, customCol, customMine);
+			newGame(); //ready game for the current setting
 			start(mineStage);
 		});
 		
@@ -235,28 +251,32 @@ public class MineGUI extends Application{
 		RadioMenuItem tiny = new RadioMenuItem("Tiny (5x5, 3)");
 		tiny.setOnAction(e ->{
 			level = MineSweeper.Level.TINY;
-			game = new MineSweeper(random.nextInt(),level);
+			prefetcher.setLevel(level);
+			newGame();
 			start(mineStage);
 		});
 		
 		RadioMenuItem easy = new RadioMenuItem("Easy (9x9, 10)");
 		easy.setOnAction(e ->{
 			level = MineSweeper.Level.EASY;
-			game = new MineSweeper(random.nextInt(),level);
+			prefetcher.setLevel(level);
+			newGame();
 			start(mineStage);
 		});
 		
 		RadioMenuItem middle = new RadioMenuItem("Medium (16x16, 40)");
 		middle.setOnAction(e ->{
 			level = MineSweeper.Level.MEDIUM;
-			game = new MineSweeper(random.nextInt(),level);
+			prefetcher.setLevel(level);
+			newGame();
 			start(mineStage);
 		});
 		
 		RadioMenuItem hard = new RadioMenuItem("Hard (16x30, 99)");
 		hard.setOnAction(e ->{
 			level = MineSweeper.Level.HARD;
-			game = new MineSweeper(random.nextInt(),level);
+			prefetcher.setLevel(level);
+			newGame();
 			start(mineStage);
 		});
 		
@@ -341,7 +361,8 @@ public class MineGUI extends Application{
 						}
 					}
 					customText = String.format("(%dx%d, %d)", customRow, customCol, customMine);
-					game = new MineSweeper(random.nextInt(),level,customRow, customCol, customMine);
+					prefetcher.setCustom(customRow, customCol, customMine);
+					newGame();
 					start(mineStage);
 					dimensionSettings.close();
 				}
@@ -360,58 +381,59 @@ public class MineGUI extends Application{
 	}
 
 	/**
-	 * The method to update buttons (cells) that are visible after one left-click.
-	 * @param row row index of cell clicked
-	 * @param col col index of cell clicked
+	 * The method to apply the changes made by the worker, on the JavaFX application thread.
+	 * @param update cells changed since the last update, and the game status
 	 */   
-	private void updateButtons(int row, int col){
+	private void applyUpdate(GameWorker.Update update){
+		if (update.game() != game || mineGrid == null)
+			return; //left over from a replaced game, or no board yet
 		
-		for (int i=0; i<game.rowCount(); i++){
-			for (int j=0; j<game.colCount();j++){
-				if (game.isVisible(i,j) && game.getCount(i,j)>=0){
-					int pos = j + i * game.colCount();
-					ToggleButton button = (ToggleButton) mineGrid.getChildren().get(pos);
-					if (i!=row || j!=col){
-						button.setSelected(true);
-						if (game.getCount(i,j)>0)
-							button.setText(game.getCount(i,j)+"");
-					}
-					
-				}
-					
+		for (int i=0; i<update.size(); i++){
+			int pos = update.cell(i);
+			int state = update.state(i);
+			view[pos] = state;
+			ToggleButton button = (ToggleButton) mineGrid.getChildren().get(pos);
+			if ((state & GameWorker.MINE) != 0){
+				button.setText("X"); //exploded, or shown at the end
+				button.setTextFill(Color.RED);
+				if ((state & GameWorker.VISIBLE) != 0)
+					button.setStyle("-fx-background-color: coral");
+			}
+			else if ((state & GameWorker.VISIBLE) != 0){
+				button.setSelected(true);
+				int count = state & GameWorker.COUNT;
+				button.setText(count > 0 ? count+"" : " ");
 			}
+			else if ((state & GameWorker.FLAGGED) != 0){
+				button.setText("F");
+				button.setSelected(false);
+			}
+			else
+				button.setText(" ");
 		}
-		
+		updateStatus(update);
 	}
 	
 	
 	/**
 	 *  The method to update game status and mine count.
+	 *  @param update the latest update from the worker
 	 */   
-	private void updateStatus(){
-		statusLabel.setText(game.getStatus());
-		if (game.isSolved())
+	private void updateStatus(GameWorker.Update update){
+		statusLabel.setText(update.status());
+		if (update.solved())
 			statusLabel.setTextFill(Color.FORESTGREEN);
-		if (game.isExploded())
+		if (update.exploded())
 			statusLabel.setTextFill(Color.RED);
 		
 		//disable all buttons if solved or exploded
-		if (game.isSolved() || game.isExploded()){
-			for (int i=0; i<game.rowCount(); i++){
-				for (int j=0; j<game.colCount();j++){
-					int pos = j + i * game.colCount();
-					ToggleButton button = (ToggleButton) mineGrid.getChildren().get(pos);
-					button.setDisable(true);
-					if (game.hasMine(i,j)){
-						//mark mines
-						button.setText("X"); //exploded
-						button.setTextFill(Color.RED);
-					}
-				}
+		if (update.over()){
+			for (Node node : mineGrid.getChildren()){
+				node.setDisable(true);
 			}
 		}
-		if (!game.isSolved())
-			mineCountLabel.setText("MINES: " + game.mineLeft());
+		if (!update.solved())
+			mineCountLabel.setText("MINES: " + update.mineLeft());
 		else
 			mineCountLabel.setText("MINES: 0");
 	}
@@ -1,5 +1,16 @@
 package com.minesweeper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.random.RandomGenerator;
 /**
  * MineSweeper class.
  */
@@ -98,6 +109,92 @@ public class MineSweeper{
      * Number of cells flagged as a mine.
      */
     private int flaggedCount; 
+    /**
+     * Difficulty level of the game.
+     */
+    private Level level;
+    /**
+     * Random cells drawn by the last initBoard() to place all mines.
+     */
+    private int placementAttempts;
+    /**
+     * The board cells in row-major order, padded with a one-cell SENTINEL border.
+     * Cell (row, col) is at index (row + 1) * stride + col + 1. After expand() there may be
+     * spare SENTINEL rows below the board and spare SENTINEL cols right of it.
+     */
+    private Cell[] cells;
+    /**
+     * Row length of the padded cells array: colCount + 2, more if expand() left spare cols.
+     */
+    private int stride;
+    /**
+     * Index offsets of the eight neighbours of a cell in the padded cells array.
+     */
+    private int[] nbrOffsets;
+    /**
+     * Neighbourhood of the board's cells.
+     */
+    private Topology topology = Topology.SQUARE;
+    /**
+     * Neighbour lists in CSR form: the neighbours of cell p are slots nbrFrom(p) to nbrTo(p) - 1 of nbrTable.
+     * For SQUARE boards this is the single list {0, 8} shared by every cell.
+     */
+    private int[] nbrStart;
+    /**
+     * Neighbour slots: offsets from the cell for SQUARE boards, cell indexes for other topologies.
+     */
+    private int[] nbrTable;
+    /**
+     * 0 for SQUARE boards (one shared list of offsets), -1 for compiled adjacency (one list per cell).
+     */
+    private int nbrMask;
+    /**
+     * Bitset of cells with a mine, bit p for the cell at index p of the padded cells array.
+     */
+    private long[] mineBits;
+    /**
+     * Bitset of visible (opened) cells, bit p for the cell at index p of the padded cells array.
+     */
+    private long[] visibleBits;
+    /**
+     * Bitset of flagged cells, bit p for the cell at index p of the padded cells array.
+     */
+    private long[] flagBits;
+    /**
+     * Frontier (hidden, unflagged cells next to an open cell) as a doubly linked list in
+     * insertion order over the padded cells array. Entry 0 (a border cell) is the list head;
+     * frontierNext is -1 for cells that are not in the frontier.
+     */
+    private int[] frontierNext;
+    /**
+     * Previous cell of each frontier cell, see frontierNext.
+     */
+    private int[] frontierPrev;
+    /**
+     * Number of cells in the frontier.
+     */
+    private int frontierSize;
+    /**
+     * Opening (connected region of 0-count cells) of each cell in the padded cells array,
+     * as opening number + 1; 0 for cells that are not 0-count. Null if the board has no index.
+     */
+    private int[] openingId;
+    /**
+     * Start of each opening's cells in openingCells, plus one final end entry.
+     */
+    private int[] openingStart;
+    /**
+     * Cells opened by clicking into each opening: its 0-count cells and their neighbours.
+     */
+    private int[] openingCells;
+    /**
+     * 3BV of the board: the minimum number of clicks needed to solve it.
+     */
+    private int bbbv;
+    /**
+     * Border cell: always visible and never a mine, so neighbour loops need no bounds checks.
+     */
+    private static final Cell SENTINEL = sentinel();
 
 
     /**
@@ -128,45 +225,69 @@ public class MineSweeper{
      * @param level difficulty of game.
      */
     public MineSweeper(int seed, Level level){
+        this(new Random(seed), seed, level);
+    }
+
+    /**
+     * Initialize game with mines placed by the given random generator.
+     * Use a SplittableRandom (or any RandomGenerator) for 64-bit seeds; independent reproducible
+     * streams for parallel workers can be taken from one root with SplittableRandom.split().
+     * @param random source of random numbers.
+     * @param level difficulty of game.
+     */
+    public MineSweeper(RandomGenerator random, Level level){
+        this(random, 0, level);
+    }
+
+    /**
+     * Initialize game based on the given random generator and the specified level.
+     * @param random source of random numbers.
+     * @param seed seed reported to flight recorder events, 0 if unknown.
+     * @param level difficulty of game.
+     */
+    private MineSweeper(RandomGenerator random, long seed, Level level){
+        NewGameEvent event = new NewGameEvent();
+        event.begin();
 
         //if level is customized, need more details (number of rows/columns/mines)
         if (level==Level.CUSTOM)
             throw new IllegalArgumentException("Customized games need more parameters!");
             
         //set number of rows, columns, mines based on the pre-defined levels
+        int[] size = levelSize(level);
+        rowCount = size[0];
+        colCount = size[1];
+        mineTotalCount = size[2];
+        
+        this.level = level;
+        
+        //create an empty board of the needed size
+        board = genEmptyBoard(rowCount, colCount);
+        indexBoard();
+        
+        //place mines, and initialize cells
+        initBoard(random, seed);
+        commitNewGame(event, seed);
+    }
+
+    /**
+     * Report the board size of a pre-defined level.
+     * @param level difficulty of game.
+     * @return number of rows, columns and mines.
+     */
+    public static int[] levelSize(Level level){
         switch(level){
-            case TINY:
-                rowCount = ROWS_TINY;
-                colCount = COLS_TINY;
-                mineTotalCount = MINES_TINY;
-                break;
             case EASY:
-                rowCount = ROWS_EASY;
-                colCount = COLS_EASY;
-                mineTotalCount = MINES_EASY;
-                break;
+                return new int[] {ROWS_EASY, COLS_EASY, MINES_EASY};
             case MEDIUM:
-                rowCount = ROWS_MEDIUM;
-                colCount = COLS_MEDIUM;
-                mineTotalCount = MINES_MEDIUM;
-                break;
+                return new int[] {ROWS_MEDIUM, COLS_MEDIUM, MINES_MEDIUM};
             case HARD:
-                rowCount = ROWS_HARD;
-                colCount = COLS_HARD;
-                mineTotalCount = MINES_HARD;
-                break;
+                return new int[] {ROWS_HARD, COLS_HARD, MINES_HARD};
+            case TINY:
+                return new int[] {ROWS_TINY, COLS_TINY, MINES_TINY};
             default:
-                //should not be able to reach here!
-                rowCount = ROWS_TINY;
-                colCount = COLS_TINY;
-                mineTotalCount = MINES_TINY;
+                throw new IllegalArgumentException("Customized games need more parameters!");
         }
-        
-        //create an empty board of the needed size
-        board = genEmptyBoard(rowCount, colCount);
-        
-        //place mines, and initialize cells
-        initBoard(seed);
     }
 
     /**
@@ -178,37 +299,215 @@ public class MineSweeper{
      * @param mineCount number of mines.
      */
     public MineSweeper(int seed, Level level, int rowCount, int colCount, int mineCount){
+        this(new Random(seed), seed, level, Topology.SQUARE, rowCount, colCount, mineCount);
+    }
+
+    /**
+     * Constructor: should only be used for customized games, with mines placed by the given random generator.
+     * @param random source of random numbers.
+     * @param level difficulty.
+     * @param rowCount number of rows.
+     * @param colCount number of cols.
+     * @param mineCount number of mines.
+     */
+    public MineSweeper(RandomGenerator random, Level level, int rowCount, int colCount, int mineCount){
+        this(random, 0, level, Topology.SQUARE, rowCount, colCount, mineCount);
+    }
+
+    /**
+     * Constructor for customized games on another topology (torus, hexagonal, knight's move or custom).
+     * Mines are placed like the SQUARE game of the same seed; counts and reveals follow the topology.
+     * @param seed for rand ints.
+     * @param topology neighbourhood of the cells.
+     * @param rowCount number of rows.
+     * @param colCount number of cols.
+     * @param mineCount number of mines.
+     */
+    public MineSweeper(int seed, Topology topology, int rowCount, int colCount, int mineCount){
+        this(new Random(seed), seed, Level.CUSTOM, topology, rowCount, colCount, mineCount);
+    }
+
+    /**
+     * Constructor for customized games.
+     * @param random source of random numbers.
+     * @param seed seed reported to flight recorder events, 0 if unknown.
+     * @param level difficulty.
+     * @param topology neighbourhood of the cells.
+     * @param rowCount number of rows.
+     * @param colCount number of cols.
+     * @param mineCount number of mines.
+     */
+    private MineSweeper(RandomGenerator random, long seed, Level level, Topology topology, int rowCount, int colCount, int mineCount){
+        NewGameEvent event = new NewGameEvent();
+        event.begin();
         
         if (level != Level.CUSTOM)
             throw new IllegalArgumentException("Only customized games need more parameters!");
+        if (topology == null)
+            throw new IllegalArgumentException("Null values not accepted!");
+        this.topology = topology;
         
         //set number of rows/columns/mines
         //assume all numbers are valid (check MineGUI for additional checking code)	
         this.rowCount = rowCount;
         this.colCount = colCount;
         this.mineTotalCount = mineCount;
-        
+        this.level = level;
         
         //create an empty board of the needed size: you implement this method
         board = genEmptyBoard(rowCount, colCount);
+        indexBoard();
         
         //place mines, and initialize cells: you implement part of this method
-        initBoard(seed);
+        initBoard(random, seed);
+        commitNewGame(event, seed);
+    }
+
+    /**
+     * Initialize a new game on a previously generated layout (see BoardCache).
+     * Mines and counts are copied from the layout, no random numbers are drawn, O(rowCount x colCount).
+     * @param layout the board layout.
+     */
+    public MineSweeper(BoardLayout layout){
+        if(layout == null){
+            throw new IllegalArgumentException("Null values not accepted!");
+        }
+        rowCount = layout.rowCount();
+        colCount = layout.colCount();
+        mineTotalCount = layout.mineCount();
+        level = layout.level();
+        
+        board = genEmptyBoard(rowCount, colCount);
+        indexBoard();
+        for (int row=0; row<rowCount; row++){
+            for (int col=0; col<colCount; col++){
+                Cell cell = cells[pos(row, col)];
+                if (layout.hasMine(row, col)){
+                    cell.setMine();
+                    Bits.set(mineBits, pos(row, col));
+                }
+                cell.setCount(layout.getCount(row, col));
+            }
+        }
+        indexOpenings();
+        
+        status = Status.INIT;
+        flaggedCount = 0;
+        clickedCount = 0;
+    }
+
+    /**
+     * Create an independent copy of a game in its current state: mines, counts, open and flagged cells,
+     * status and counters. The read-only opening index is shared instead of rebuilt, so a copy costs
+     * O(rowCount x colCount) with no random numbers, counting or region search. The copy has the same
+     * cells array layout, spare rows and cols included.
+     * @param other the game to copy.
+     */
+    public MineSweeper(MineSweeper other){
+        if(other == null){
+            throw new IllegalArgumentException("Null values not accepted!");
+        }
+        rowCount = other.rowCount;
+        colCount = other.colCount;
+        mineTotalCount = other.mineTotalCount;
+        level = other.level;
+        topology = other.topology;
+        placementAttempts = other.placementAttempts;
+        
+        board = genEmptyBoard(rowCount, colCount);
+        indexBoard();
+        if (other.cells.length != cells.length || other.stride != stride){ // Keep the spare rows and cols of an expanded game
+            stride = other.stride;
+            squareOffsets();
+            cells = new Cell[other.cells.length];
+            Arrays.fill(cells, SENTINEL);
+            for (int row=0; row<rowCount; row++){
+                for (int col=0; col<colCount; col++){
+                    cells[pos(row, col)] = board.get(row, col);
+                }
+            }
+        }
+        for (int p = 0; p < cells.length; p++){
+            Cell from = other.cells[p];
+            if (from == SENTINEL){
+                continue;
+            }
+            Cell cell = cells[p];
+            if (from.hasMine()) cell.setMine();
+            if (from.visible()) cell.setVisible();
+            if (from.isFlagged()) cell.setFlagged();
+            cell.setCount(from.getCount(), topology.maxDegree());
+        }
+        mineBits = other.mineBits.clone();
+        visibleBits = other.visibleBits.clone();
+        flagBits = other.flagBits.clone();
+        frontierNext = other.frontierNext.clone();
+        frontierPrev = other.frontierPrev.clone();
+        frontierSize = other.frontierSize;
+        openingId = other.openingId;
+        openingStart = other.openingStart;
+        openingCells = other.openingCells;
+        bbbv = other.bbbv;
         
+        status = other.status;
+        flaggedCount = other.flaggedCount;
+        clickedCount = other.clickedCount;
+    }
+
+    /**
+     * Fill in and commit a NewGameEvent if flight recording of it is enabled.
+     * @param event the event begun at the start of the constructor.
+     * @param seed for random numbers.
+     */
+    private void commitNewGame(NewGameEvent event, long seed){
+        if(event.shouldCommit()){
+            event.level = level.name();
+            event.rows = rowCount;
+            event.cols = colCount;
+            event.mines = mineTotalCount;
+            event.seed = seed;
+            event.attempts = placementAttempts;
+            event.commit();
+        }
     }
 
     /**
      * Method to initialize the game, including placing mines.
      * assume it is invoked only after an empty board (rowCount x colCount) has been created and set.
+     * The board is the same one older versions generated from this seed.
      * @param seed for random numbers.
      */
     public void initBoard(int seed){
+        //java.util.Random keeps the original seed-to-board mapping
+        initBoard(new Random(seed), seed);
+    }
+
+    /**
+     * Method to initialize the game with mines placed by the given random generator.
+     * Assume it is invoked only after an empty board (rowCount x colCount) has been created and set.
+     * @param random source of random numbers.
+     */
+    public void initBoard(RandomGenerator random){
+        initBoard(random, 0);
+    }
+
+    /**
+     * Helper method for initBoard(), places mines and computes neighbour counts.
+     * @param random source of random numbers.
+     * @param seed seed reported to flight recorder events, 0 if unknown.
+     */
+    private void initBoard(RandomGenerator random, long seed){
+        if(random == null){
+            throw new IllegalArgumentException("Null values not accepted!");
+        }
         
-        //use seed to initialize a random number sequence
-        Random random = new Random(seed);
+        long start = System.nanoTime();
+        InitBoardEvent event = new InitBoardEvent();
+        event.begin();
         
         //randomly place mines on board
         int mineNum = 0;
+        int retries = 0;
         for ( ;mineNum<mineTotalCount;){
         
             //generate next (row, col)
@@ -217,30 +516,89 @@ public class MineSweeper{
             
                 
             //cell already has a mine: try again
-            if (hasMine(row, col)){
+            Cell cell = cells[pos(row, col)];
+            if (cell.hasMine()){
+                retries++;
                 continue;
             }
             
             //place mine
-            board.get(row,col).setMine();
+            cell.setMine();
+            Bits.set(mineBits, pos(row, col));
             mineNum++;
         }
         //System.out.println(board);
         
         //calculate nbr counts for each cell
-        for (int row=0; row<rowCount; row++){
-            for (int col=0; col<colCount; col++){
-                int count = countNbrMines(row, col);
-                board.get(row,col).setCount(count);
-            }
+        if (nbrMask == 0){
+            countByPlanes();
+        } else {
+            countByAdjacency();
         }
         
+        //label the openings once, so clicks into them need no search
+        indexOpenings();
+        
         //initialize other game settings   
         status = Status.INIT;
             
         flaggedCount = 0;
         clickedCount = 0;
+        
+        placementAttempts = mineTotalCount + retries;
+        EngineMetrics.boardGenerated(System.nanoTime() - start, retries);
+        if(event.shouldCommit()){
+            event.rows = rowCount;
+            event.cols = colCount;
+            event.mines = mineTotalCount;
+            event.seed = seed;
+            event.attempts = placementAttempts;
+            event.commit();
+        }
+    }
+
+    /**
+     * Set the counts of a SQUARE board as a sum of shifted mine planes.
+     * Large boards do this in parallel row stripes: the first pass fills the mine plane,
+     * the second only reads the halo rows above and below its stripe.
+     */
+    private void countByPlanes(){
+        byte[] mines = new byte[cells.length];
+        Stripes.run(rowCount, colCount, (rowFrom, rowTo) -> {
+            for (int p=pos(rowFrom, 0), end=pos(rowTo, 0); p<end; p++){
+                if (cells[p].hasMine()){
+                    mines[p] = 1;
+                }
+            }
+        });
+        byte[] counts = new byte[cells.length];
+        Stripes.run(rowCount, colCount, (rowFrom, rowTo) -> {
+            NbrCountKernel.count(mines, colCount, counts, rowFrom, rowTo);
+            for (int row=rowFrom; row<rowTo; row++){
+                for (int col=0; col<colCount; col++){
+                    int p = pos(row, col);
+                    Cell cell = cells[p];
+                    cell.setCount(cell.hasMine() ? -1 : counts[p]);
+                }
+            }
+        });
+    }
 
+    /**
+     * Set the counts of a board of another topology through its compiled adjacency,
+     * in parallel row stripes for large boards. Counts may exceed 8 up to the topology's maximum degree.
+     */
+    private void countByAdjacency(){
+        int maxCount = topology.maxDegree();
+        Stripes.run(rowCount, colCount, (rowFrom, rowTo) -> {
+            for (int row=rowFrom; row<rowTo; row++){
+                for (int col=0; col<colCount; col++){
+                    int p = pos(row, col);
+                    Cell cell = cells[p];
+                    cell.setCount(cell.hasMine() ? -1 : countAdjMines(p), maxCount);
+                }
+            }
+        });
     }
         
     /**
@@ -255,6 +613,30 @@ public class MineSweeper{
      */
     public int colCount() { return colCount; }
 
+    /**
+     * Report difficulty level.
+     * @return level of the game.
+     */
+    public Level getLevel() { return level; }
+
+    /**
+     * Report the neighbourhood of the cells.
+     * @return topology, SQUARE for the classic game.
+     */
+    public Topology getTopology() { return topology; }
+
+    /**
+     * Report number of openings (connected regions of 0-count cells).
+     * @return number of openings, -1 if the board was set with setBoard().
+     */
+    public int openingCount() { return openingId == null ? -1 : openingStart.length - 1; }
+
+    /**
+     * Report the 3BV of the board: the minimum number of left clicks needed to solve it.
+     * @return 3BV, -1 if the board was set with setBoard().
+     */
+    public int get3BV() { return openingId == null ? -1 : bbbv; }
+
     /**
      * Report whether board is solved.
      * @return boolean value.
@@ -420,6 +802,24 @@ public class MineSweeper{
         //set size
         rowCount = board.getNumRow();
         colCount = board.getNumCol();
+        indexBoard();
+        for (int row=0; row<rowCount; row++){ // The new board may already have mines, flags or open cells
+            for (int col=0; col<colCount; col++){
+                int p = pos(row, col);
+                Cell cell = cells[p];
+                if (cell.hasMine()) Bits.set(mineBits, p);
+                if (cell.visible()) Bits.set(visibleBits, p);
+                if (cell.isFlagged()) Bits.set(flagBits, p);
+            }
+        }
+        for (int row=0; row<rowCount; row++){
+            for (int col=0; col<colCount; col++){
+                int p = pos(row, col);
+                if (!cells[p].visible() && !cells[p].isFlagged() && hasOpenNbr(p)){
+                    frontierAdd(p);
+                }
+            }
+        }
         
         
         //set other features
@@ -442,6 +842,68 @@ public class MineSweeper{
 
     // ADD MORE PRIVATE MEMBERS HERE IF NEEDED!
 
+    /**
+     * Batch opcode: click / open a cell.
+     */
+    public static final int OP_CLICK = 0;
+    /**
+     * Batch opcode: flag a cell.
+     */
+    public static final int OP_FLAG = 1;
+    /**
+     * Batch opcode: un-flag a cell.
+     */
+    public static final int OP_UNFLAG = 2;
+
+    /**
+     * Board edges that expand() can grow. Only the edges away from cell (0, 0) can be grown, as the
+     * board grid inserts at its start by shifting every row (TOP) or every cell (LEFT).
+     */
+    public enum Edge {
+        /**
+         * Below the last row and right of the last col.
+         */
+        BOTTOM, RIGHT
+    }
+
+    /**
+     * Journal entry kind: cell was opened.
+     */
+    private static final int J_OPEN = 0;
+    /**
+     * Journal entry kind: cell was flagged.
+     */
+    private static final int J_FLAG = 1;
+    /**
+     * Journal entry kind: cell was un-flagged.
+     */
+    private static final int J_UNFLAG = 2;
+
+    /**
+     * Cell changes made by the current batch, packed as (index in cells) * 4 + kind.
+     */
+    private int[] journal = new int[16];
+    /**
+     * Number of entries in the journal.
+     */
+    private int journalSize;
+    /**
+     * Whether cell changes are currently being journaled.
+     */
+    private boolean journaling;
+    /**
+     * Cells changed since the last takeChanges(), as indexes in the padded cells array.
+     */
+    private int[] changes = new int[16];
+    /**
+     * Number of entries in changes.
+     */
+    private int changeCount;
+    /**
+     * Whether changed cells are being collected for takeChanges().
+     */
+    private boolean tracking;
+
 
     //*******************************************************
     //******* Methods to support board initialization *******
@@ -450,72 +912,258 @@ public class MineSweeper{
     /**
      * Create and return a grid with rowNum x colNum individual cells in it.
      * All cells are default cell objects (no mines), amortized O(rowCount x colCount).
+     * Rows of large boards are filled in parallel stripes.
      * @param rowNum number of rows.
      * @param colNum number of cols.
      * @return game board.
      */
+    @SuppressWarnings("unchecked")
     public static DynGrid310<Cell> genEmptyBoard(int rowNum, int colNum){
         if(rowNum <= 0 || colNum <= 0){ // Return null for invalid counts
             return null;
         }
-        DynGrid310<Cell> dg = new DynGrid310<>(); // New board.
-        for(int i = 0; i < rowNum; ++i){ // Iterate through number of rows.
-            DynArr310<Cell> da = new DynArr310<>(colNum); // Create the new row based on colNum.
-            for(int j = 0; j < colNum; ++j){
-                da.add(new Cell()); // Add cells to the row.
+        DynArr310<Cell>[] rows = (DynArr310<Cell>[]) new DynArr310<?>[rowNum];
+        Stripes.run(rowNum, colNum, (rowFrom, rowTo) -> {
+            for(int i = rowFrom; i < rowTo; ++i){ // Iterate through the rows of the stripe.
+                DynArr310<Cell> da = new DynArr310<>(colNum); // Create the new row based on colNum.
+                for(int j = 0; j < colNum; ++j){
+                    da.add(new Cell()); // Add cells to the row.
+                }
+                rows[i] = da;
             }
-            dg.addRow(i,da); // Add the row to the board.
+        });
+        DynGrid310<Cell> dg = new DynGrid310<>(); // New board.
+        for(int i = 0; i < rowNum; ++i){
+            dg.addRow(i, rows[i]); // Add the row to the board.
         }
         return dg;
     }
 
     /**
-     * Employs countAdjMines() helper method.
-     * Count the number of mines in the neighbor cells of cell (row, col).
-     * @param row row being referenced.
-     * @param col col being referenced.
-     * @return -2 for invalid row / col indexes, -1 if cell at (row, col) has a mine underneath it. Otherwise return number of mines adj. to cell.
+     * Build the padded cells array and neighbour offsets for the current board, O(rowCount x colCount).
+     * Must be called whenever the board is replaced.
      */
-    public int countNbrMines(int row, int col){
-        if(!board.isValidCell(row, col)){ // Return -2 for invalid indices
-            return -2;
+    private void indexBoard(){
+        openingId = null; // Cell counts of a new board are not known yet
+        stride = colCount + 2;
+        int words = board == null ? 0 : Bits.words((rowCount + 2) * stride);
+        mineBits = new long[words];
+        visibleBits = new long[words];
+        flagBits = new long[words];
+        squareOffsets();
+        if(board == null){ // Invalid board size
+            cells = new Cell[0];
+            frontierNext = new int[] {0};
+            frontierPrev = new int[1];
+            frontierSize = 0;
+            return;
         }
-        if(board.get(row, col).hasMine()){ // Return -1 if cell is a mine
-            return -1;
-        } else {
-            return countAdjMines(row, col); // Return number of mines adjacent to cell.
+        if(topology != Topology.SQUARE){ // Compile the adjacency of the other topologies
+            int[][] csr = topology.compile(rowCount, colCount);
+            nbrStart = csr[0];
+            nbrTable = csr[1];
+            nbrMask = -1;
         }
+        cells = new Cell[(rowCount + 2) * stride];
+        Arrays.fill(cells, SENTINEL);
+        frontierNext = new int[cells.length];
+        frontierPrev = new int[cells.length];
+        Arrays.fill(frontierNext, -1);
+        frontierNext[0] = 0;
+        frontierSize = 0;
+        Stripes.run(rowCount, colCount, (rowFrom, rowTo) -> {
+            for(int row = rowFrom; row < rowTo; ++row){
+                for(int col = 0; col < colCount; ++col){
+                    cells[pos(row, col)] = board.get(row, col);
+                }
+            }
+        });
     }
 
     /**
-     * Helper method to count adjacent mines.
-     * @param row row being referenced.
-     * @param col col being referenced.
-     * @return number of adjacent mines.
+     * Set the eight neighbour offsets for the current stride, shared by every cell of a SQUARE board.
      */
-    private int countAdjMines(int row, int col) {
-        int count = 0; // the number of mines around the cell
-        for (int i = -1; i <= 1; i++){
-            for (int j = -1; j <= 1; j++){ // Nested for loops iterate over each cell aroud the cell being referenced
-                // First checks if the cell isValid, then checks if there is a mine at the cell
-                int r = row + i;
-                int c = col + j;
-                if (board.isValidCell(r, c) && hasMine(r, c)){ 
-                    count++; // If there is a mine, count is incremented
+    private void squareOffsets(){
+        nbrOffsets = new int[] {
+            -stride - 1, -stride, -stride + 1,
+            -1,                   1,
+            stride - 1,  stride,  stride + 1
+        };
+        nbrStart = new int[] {0, nbrOffsets.length};
+        nbrTable = nbrOffsets;
+        nbrMask = 0;
+    }
+
+    /**
+     * Label every opening (connected region of 0-count cells) and list the cells that a click
+     * into it opens, O(rowCount x colCount). Also computes the 3BV of the board.
+     * Relies on the cell counts, so it is run after they are set.
+     */
+    private void indexOpenings(){
+        openingId = new int[cells.length];
+        int[] lastOpening = new int[cells.length]; // Last opening a cell was listed for
+        int[] start = new int[16];
+        int[] list = new int[64];
+        int size = 0;
+        int openings = 0;
+        int bordered = 0; // Non-zero cells next to an opening
+        for (int p = 0; p < cells.length; p++){
+            if (cells[p].getCount() != 0 || openingId[p] != 0){ // Sentinels have count -1
+                continue;
+            }
+            //new opening: breadth first over its 0-count cells, using list itself as the queue
+            int id = ++openings;
+            if (id == start.length){
+                start = Arrays.copyOf(start, id * 2);
+            }
+            start[id - 1] = size;
+            openingId[p] = id;
+            lastOpening[p] = id;
+            if (size == list.length){
+                list = Arrays.copyOf(list, size * 2);
+            }
+            list[size++] = p;
+            for (int head = start[id - 1]; head < size; head++){
+                int q = list[head];
+                if (cells[q].getCount() != 0){ // Border cell, not expanded
+                    continue;
+                }
+                for (int i = nbrFrom(q), end = nbrTo(q); i < end; i++){
+                    int n = nbr(q, i);
+                    if (lastOpening[n] == id || cells[n] == SENTINEL){
+                        continue;
+                    }
+                    if (lastOpening[n] == 0 && cells[n].getCount() > 0){
+                        bordered++;
+                    }
+                    lastOpening[n] = id;
+                    if (cells[n].getCount() == 0){
+                        openingId[n] = id;
+                    }
+                    if (size == list.length){
+                        list = Arrays.copyOf(list, size * 2);
+                    }
+                    list[size++] = n;
                 }
             }
         }
-        return count;
+        start[openings] = size;
+        openingStart = Arrays.copyOf(start, openings + 1);
+        openingCells = Arrays.copyOf(list, size);
+        
+        //3BV: one click per opening, plus one per safe cell not next to any opening
+        int safe = rowCount * colCount - mineTotalCount;
+        int zero = 0;
+        for (int p = 0; p < cells.length; p++){
+            if (openingId[p] != 0){
+                zero++;
+            }
+        }
+        bbbv = openings + (safe - zero - bordered);
     }
 
-
-    //******************************************************
-    //*******   Methods to support game operations   *******
-    //******************************************************
+    /**
+     * Row-major index (row * colCount + col) of a cell of the padded cells array.
+     * @param p index into cells, not a border cell.
+     * @return row-major index.
+     */
+    private int index(int p){
+        int row = p / stride;
+        return (row - 1) * colCount + p - row * stride - 1;
+    }
 
     /**
-     * Function for when a cell is clicked.
-     * If invalid or already visible cell, return -2.
+     * Index of cell (row, col) in the padded cells array, no bounds checking.
+     * @param row row being referenced.
+     * @param col col being referenced.
+     * @return index into cells.
+     */
+    private int pos(int row, int col){
+        return (row + 1) * stride + col + 1;
+    }
+
+    /**
+     * First neighbour slot of a cell. Neighbour loops are the same branch-free loop for every topology:
+     * for (int i = nbrFrom(p), end = nbrTo(p); i &lt; end; i++) { int n = nbr(p, i); ... }
+     * @param p index of the cell in the padded cells array.
+     * @return first slot in nbrTable.
+     */
+    private int nbrFrom(int p){
+        return nbrStart[p & nbrMask];
+    }
+
+    /**
+     * End of the neighbour slots of a cell.
+     * @param p index of the cell in the padded cells array.
+     * @return one past the last slot in nbrTable.
+     */
+    private int nbrTo(int p){
+        return nbrStart[(p & nbrMask) + 1];
+    }
+
+    /**
+     * Neighbour of a cell in a given slot: the cell plus an offset on SQUARE boards, a listed cell otherwise.
+     * @param p index of the cell in the padded cells array.
+     * @param i slot, from nbrFrom(p) to nbrTo(p) - 1.
+     * @return index of the neighbour in the padded cells array.
+     */
+    private int nbr(int p, int i){
+        return (p & ~nbrMask) + nbrTable[i];
+    }
+
+    /**
+     * Create the border cell shared by all boards.
+     * @return a visible cell without a mine.
+     */
+    private static Cell sentinel(){
+        Cell cell = new Cell();
+        cell.setVisible();
+        return cell;
+    }
+
+    /**
+     * Employs countAdjMines() helper method.
+     * Count the number of mines in the neighbor cells of cell (row, col).
+     * @param row row being referenced.
+     * @param col col being referenced.
+     * @return -2 for invalid row / col indexes, -1 if cell at (row, col) has a mine underneath it. Otherwise return number of mines adj. to cell.
+     */
+    public int countNbrMines(int row, int col){
+        if(!board.isValidCell(row, col)){ // Return -2 for invalid indices
+            return -2;
+        }
+        int p = pos(row, col);
+        if(cells[p].hasMine()){ // Return -1 if cell is a mine
+            return -1;
+        } else {
+            return countAdjMines(p); // Return number of mines adjacent to cell.
+        }
+    }
+
+    /**
+     * Helper method to count adjacent mines.
+     * The sentinel border (or the compiled adjacency of other topologies) makes this a loop without bounds checks.
+     * @param p index of the cell in the padded cells array.
+     * @return number of adjacent mines.
+     */
+    private int countAdjMines(int p) {
+        int count = 0; // the number of mines around the cell
+        for (int i = nbrFrom(p), end = nbrTo(p); i < end; i++){
+            if (cells[nbr(p, i)].hasMine()){
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    //******************************************************
+    //*******   Methods to support game operations   *******
+    //******************************************************
+
+    /**
+     * Function for when a cell is clicked.
+     * If invalid or already visible cell, return -2.
      * If cell has a mine, return -1 and update game status.
      * Otherwise, open the cell and return number of mines adjacent to the cell.
      * If the cell has 0 mines adjacent to it, open all 0-count cells which are connected to this cell.
@@ -526,53 +1174,230 @@ public class MineSweeper{
      * @return integer value.
      */
     public int clickAt(int row, int col){
+        int ret = meteredClick(row, col);
+        if(ret >= 0){ // Only opening a cell can solve the game
+            checkSolved();
+        }
+        return ret;
+    }
+
+    /**
+     * Run click() and record its latency and the cells it opened, for clickAt() and batches.
+     * The clock is only read while metrics are enabled.
+     * @param row row being referenced.
+     * @param col col being referenced.
+     * @return same as clickAt().
+     */
+    private int meteredClick(int row, int col){
+        if(!EngineMetrics.isEnabled()){
+            return click(row, col);
+        }
+        long start = System.nanoTime();
+        int opened = clickedCount;
+        int ret = click(row, col);
+        EngineMetrics.clicked(System.nanoTime() - start, clickedCount - opened);
+        return ret;
+    }
+
+    /**
+     * Helper method for clickAt(), does everything except the SOLVED check.
+     * @param row row being referenced.
+     * @param col col being referenced.
+     * @return same as clickAt().
+     */
+    private int click(int row, int col){
         if(clickedCount == 0){ // If no cells have been clicked, set the status to InGame since first call of the function is the first click
-            status = Status.INGAME;
+            setStatus(Status.INGAME);
         }
         if(!board.isValidCell(row, col) || board.get(row, col).isFlagged() || board.get(row, col).visible()){ // If invalid cell, visible cell, or flagged cell
             return -2;
-        } else if(board.get(row, col).hasMine()){ // If cell is a mine
-            clickedCount++; // Increment clickedCount
-            board.get(row, col).setVisible(); // Set the cell visible
-            status = Status.EXPLODED; // Update status
+        }
+        int p = pos(row, col);
+        if(cells[p].hasMine()){ // If cell is a mine
+            open(p); // Set the cell visible
+            setStatus(Status.EXPLODED); // Update status
             return -1;
-        } else if(countAdjMines(row, col) == 0){ // Conditional for a 0-count cell.
-            openAdjCells(row, col);
-            if(clickedCount+mineTotalCount == board.getNumCol() * board.getNumRow()){ // If all cells have been clicked, set game status to solved.
-                status = Status.SOLVED;
+        } 
+        int adjMines = countAdjMines(p);
+        if(adjMines == 0){ // Conditional for a 0-count cell.
+            RevealEvent event = new RevealEvent();
+            event.begin();
+            int opened = clickedCount;
+            if(openingId != null && openingId[p] != 0){ // Open the precomputed opening
+                int id = openingId[p];
+                for(int i = openingStart[id - 1]; i < openingStart[id]; ++i){
+                    if(!cells[openingCells[i]].visible()){
+                        open(openingCells[i]);
+                    }
+                }
+            } else {
+                open(p);
+                openAdjCells(p);
+            }
+            if(event.shouldCommit()){
+                event.row = row;
+                event.col = col;
+                event.opened = clickedCount - opened;
+                event.commit();
             }
             return 0;
         } else { // Conditional for cells with mines adjacent to them.
-            clickedCount++;
-            int adjMines = countAdjMines(row, col);
-            board.get(row, col).setVisible();
-            if(clickedCount+mineTotalCount == board.getNumCol() * board.getNumRow()){
-                status = Status.SOLVED;
-            }
+            open(p);
             return adjMines;
         }
         
     }
 
     /**
-     * Recursive helper method to open adjacent cells.
-     * @param row row being referenced.
-     * @param col col being referenced.
+     * Set game status to solved if all non-mine cells have been clicked.
+     */
+    private void checkSolved(){
+        if(clickedCount+mineTotalCount == board.getNumCol() * board.getNumRow()){
+            setStatus(Status.SOLVED);
+        }
+    }
+
+    /**
+     * Change game status, recording finished games unless inside an atomic batch
+     * (applyMoves() records those once the batch is kept).
+     * @param newStatus the new status.
      */
-    private void openAdjCells(int row, int col){
-        for (int i = -1; i <= 1; i++){
-            for (int j = -1; j <= 1; j++){ // The same nested for loop as countAdjMines is employed
-                int r = row + i; // Current iteration of row
-                int c = col + j; // Current iteration of column
-                if (board.isValidCell(r, c) && !board.get(r, c).visible()){ // Checks if the cell is valid, and if the cell is invisible
-                    int adjMines = countAdjMines(r, c); // If cell is valid and invisivble, count number of mines around that cell
-                    board.get(r, c).setVisible(); // Then the cell is set as visible
-                    clickedCount++;
-                    if (adjMines == 0){   
-                        openAdjCells(r, c);  // If there are no mines around iteration of cell, open recurse over the function
+    private void setStatus(Status newStatus){
+        if(status != newStatus && !journaling && (newStatus == Status.SOLVED || newStatus == Status.EXPLODED)){
+            EngineMetrics.gameOver(newStatus);
+        }
+        if(status != newStatus){
+            StatusEvent event = new StatusEvent();
+            if(event.shouldCommit()){
+                event.from = status.name();
+                event.to = newStatus.name();
+                event.clicked = clickedCount;
+                event.commit();
+            }
+        }
+        status = newStatus;
+    }
+
+    /**
+     * Helper method to open adjacent cells, breadth first one level at a time.
+     * Opens every cell around the 0-count cell p, then around each 0-count cell opened, and so on.
+     * Sentinel border cells are visible, so they are skipped without bounds checks.
+     * @param p index of an opened 0-count cell in the padded cells array.
+     */
+    private void openAdjCells(int p){
+        int[] level = {p};
+        int size = 1;
+        int[] next = new int[16];
+        while (size > 0){
+            int nextSize = 0;
+            for (int i = 0; i < size; i++){
+                int q = level[i];
+                for (int j = nbrFrom(q), end = nbrTo(q); j < end; j++){
+                    int n = nbr(q, j); // Current neighbour
+                    if (!cells[n].visible()){ // Checks if the cell is invisible
+                        open(n);
+                        if (countAdjMines(n) == 0){ // Expand it on the next level
+                            if (nextSize == next.length){
+                                next = Arrays.copyOf(next, nextSize * 2);
+                            }
+                            next[nextSize++] = n;
+                        }
                     }
                 }
             }
+            int[] done = level; // Reuse the finished level for the one after next
+            level = next;
+            next = done;
+            size = nextSize;
+        }
+    }
+
+    /**
+     * Open a cell and count it as clicked.
+     * @param p index of the cell in the padded cells array.
+     */
+    private void open(int p){
+        cells[p].setVisible();
+        Bits.set(visibleBits, p);
+        record(p, J_OPEN);
+        frontierOpened(p);
+        clickedCount++;
+    }
+
+    //******************************************************
+    //*******       Incremental frontier upkeep      *******
+    //******************************************************
+
+    /**
+     * Append a cell to the frontier list, O(1).
+     * @param p index of the cell in the padded cells array.
+     */
+    private void frontierAdd(int p){
+        int last = frontierPrev[0];
+        frontierNext[last] = p;
+        frontierPrev[p] = last;
+        frontierNext[p] = 0;
+        frontierPrev[0] = p;
+        frontierSize++;
+    }
+
+    /**
+     * Unlink a cell from the frontier list if it is in it, O(1).
+     * @param p index of the cell in the padded cells array.
+     */
+    private void frontierRemove(int p){
+        if(frontierNext[p] < 0){
+            return;
+        }
+        frontierNext[frontierPrev[p]] = frontierNext[p];
+        frontierPrev[frontierNext[p]] = frontierPrev[p];
+        frontierNext[p] = -1;
+        frontierSize--;
+    }
+
+    /**
+     * Check whether a cell has an open neighbour inside the board (border cells do not count).
+     * @param p index of the cell in the padded cells array.
+     * @return true if a board neighbour is visible.
+     */
+    private boolean hasOpenNbr(int p){
+        for(int i = nbrFrom(p), end = nbrTo(p); i < end; i++){
+            Cell n = cells[nbr(p, i)];
+            if(n != SENTINEL && n.visible()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Update the frontier after cell p was opened: p leaves it, its hidden unflagged neighbours join it.
+     * @param p index of the opened cell in the padded cells array.
+     */
+    private void frontierOpened(int p){
+        frontierRemove(p);
+        for(int i = nbrFrom(p), end = nbrTo(p); i < end; i++){
+            int n = nbr(p, i);
+            if(!cells[n].visible() && !cells[n].isFlagged() && frontierNext[n] < 0){ // Border cells are visible
+                frontierAdd(n);
+            }
+        }
+    }
+
+    /**
+     * Update the frontier after opened cell p was hidden again: p may rejoin it, and
+     * neighbours with no other open neighbour leave it.
+     * @param p index of the hidden cell in the padded cells array.
+     */
+    private void frontierClosed(int p){
+        if(!cells[p].isFlagged() && hasOpenNbr(p)){
+            frontierAdd(p);
+        }
+        for(int i = nbrFrom(p), end = nbrTo(p); i < end; i++){
+            int n = nbr(p, i);
+            if(cells[n] != SENTINEL && frontierNext[n] >= 0 && !hasOpenNbr(n)){ // Entry 0 is the list head
+                frontierRemove(n);
+            }
         }
     }
 
@@ -585,12 +1410,18 @@ public class MineSweeper{
      */
     public boolean flagAt(int row, int col){
         if(clickedCount == 0){
-            status = Status.INGAME;
+            setStatus(Status.INGAME);
         }
         if(!board.isValidCell(row, col) || board.get(row, col).visible()){return false;} // Return false for invalid or visible cell
         
+        if(!board.get(row, col).isFlagged()){
+            record(pos(row, col), J_FLAG);
+        }
         board.get(row, col).setFlagged();
+        Bits.set(flagBits, pos(row, col));
+        frontierRemove(pos(row, col));
         flaggedCount++; // Update number of flagges cells
+        EngineMetrics.flagged();
         return true;
             
     }
@@ -606,10 +1437,542 @@ public class MineSweeper{
             return false; // Return false for invalid cell, visible cell or if cell was not flagged before.
         } 
         board.get(row, col).unFlagged();
+        Bits.clear(flagBits, pos(row, col));
+        record(pos(row, col), J_UNFLAG);
+        if(hasOpenNbr(pos(row, col))){
+            frontierAdd(pos(row, col));
+        }
         flaggedCount--; // Update flagged count.
+        EngineMetrics.unflagged();
+        return true;
+    }
+
+    //******************************************************
+    //*******     Bitset queries over the whole board *******
+    //******************************************************
+
+    /**
+     * Report the row-major index (row * colCount + col) of the first mine at or after index from.
+     * Iterate with: for (int i = nextMine(0); i >= 0; i = nextMine(i + 1)).
+     * @param from first index to look at.
+     * @return index of the mine, -1 if there is none.
+     */
+    public int nextMine(int from){
+        return next(mineBits, from, true);
+    }
+
+    /**
+     * Report the row-major index of the first hidden (not opened) cell at or after index from.
+     * @param from first index to look at.
+     * @return index of the hidden cell, -1 if there is none.
+     */
+    public int nextHidden(int from){
+        return next(visibleBits, from, false);
+    }
+
+    /**
+     * Report the row-major index of the first flagged cell at or after index from.
+     * @param from first index to look at.
+     * @return index of the flagged cell, -1 if there is none.
+     */
+    public int nextFlag(int from){
+        return next(flagBits, from, true);
+    }
+
+    /**
+     * Find the first set or clear bit of a padded bitset at or after a row-major index, one row at a time
+     * so that the border and spare cells are skipped, O(rows + words scanned).
+     * @param bits bitset over the padded cells array.
+     * @param from first row-major index to look at.
+     * @param set whether to look for a set bit rather than a clear one.
+     * @return row-major index of the bit, -1 if there is none.
+     */
+    private int next(long[] bits, int from, boolean set){
+        if(from < 0 || from >= rowCount * colCount){
+            return -1;
+        }
+        for(int row = from / colCount, col = from % colCount; row < rowCount; ++row, col = 0){
+            int start = pos(row, 0);
+            int p = set ? Bits.nextSet(bits, start + col, start + colCount) : Bits.nextClear(bits, start + col, start + colCount);
+            if(p >= 0){
+                return row * colCount + p - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Report the number of opened cells, O(cells / 64).
+     * @return number of visible cells.
+     */
+    public int visibleCount(){
+        return Bits.count(visibleBits);
+    }
+
+    /**
+     * Report the number of hidden cells, O(cells / 64).
+     * @return number of hidden cells.
+     */
+    public int hiddenCount(){
+        return rowCount * colCount - visibleCount();
+    }
+
+    /**
+     * Report the number of distinct flagged cells, O(cells / 64).
+     * @return number of flagged cells.
+     */
+    public int flagCount(){
+        return Bits.count(flagBits);
+    }
+
+    /**
+     * Return a copy of the mine bitset, bit (row * colCount + col).
+     * @return the bitset words.
+     */
+    public long[] getMineBits(){ return rowMajor(mineBits); }
+
+    /**
+     * Return a copy of the visible cell bitset, bit (row * colCount + col).
+     * @return the bitset words.
+     */
+    public long[] getVisibleBits(){ return rowMajor(visibleBits); }
+
+    /**
+     * Return a copy of the flagged cell bitset, bit (row * colCount + col).
+     * @return the bitset words.
+     */
+    public long[] getFlagBits(){ return rowMajor(flagBits); }
+
+    /**
+     * Copy a bitset over the padded cells array into row-major order, O(rows + words).
+     * @param bits bitset over the padded cells array.
+     * @return bitset with bit (row * colCount + col).
+     */
+    private long[] rowMajor(long[] bits){
+        long[] out = new long[Bits.words(rowCount * colCount)];
+        for(int row = 0; row < rowCount; ++row){
+            Bits.copy(bits, pos(row, 0), out, row * colCount, colCount);
+        }
+        return out;
+    }
+
+    //******************************************************
+    //*******            Frontier queries            *******
+    //******************************************************
+
+    /**
+     * Check whether a cell is on the frontier: hidden, not flagged and next to an open cell, O(1).
+     * @param row row being referenced.
+     * @param col col being referenced.
+     * @return true if the cell is on the frontier, false otherwise or for an invalid cell.
+     */
+    public boolean isFrontier(int row, int col){
+        return board != null && board.isValidCell(row, col) && frontierNext[pos(row, col)] >= 0;
+    }
+
+    /**
+     * Report the number of frontier cells, O(1).
+     * @return size of the frontier.
+     */
+    public int frontierSize(){
+        return frontierSize;
+    }
+
+    /**
+     * Report the row-major index (row * colCount + col) of the oldest frontier cell.
+     * Iterate with: for (int i = firstFrontier(); i >= 0; i = nextFrontier(i)).
+     * @return index of the cell, -1 if the frontier is empty.
+     */
+    public int firstFrontier(){
+        return frontierNext[0] == 0 ? -1 : index(frontierNext[0]);
+    }
+
+    /**
+     * Report the row-major index of the frontier cell added after the given one, O(1).
+     * @param idx row-major index of a frontier cell.
+     * @return index of the next cell, -1 at the end or if idx is not on the frontier.
+     */
+    public int nextFrontier(int idx){
+        if(idx < 0 || idx >= rowCount * colCount){
+            return -1;
+        }
+        int next = frontierNext[pos(idx / colCount, idx % colCount)];
+        return next <= 0 ? -1 : index(next);
+    }
+
+    /**
+     * Return the row-major indexes of the frontier cells in insertion order, O(frontier size).
+     * @return a new array of indexes.
+     */
+    public int[] getFrontier(){
+        int[] out = new int[frontierSize];
+        int n = 0;
+        for(int p = frontierNext[0]; p != 0; p = frontierNext[p]){
+            out[n++] = index(p);
+        }
+        return out;
+    }
+
+    //******************************************************
+    //*******            Change tracking             *******
+    //******************************************************
+
+    /**
+     * Start or stop collecting the cells that moves change, for incremental displays.
+     * Either way the list is emptied.
+     * @param on whether to collect changes.
+     */
+    public void setChangeTracking(boolean on){
+        tracking = on;
+        changeCount = 0;
+    }
+
+    /**
+     * Return the cells opened, flagged or un-flagged since the last call, and empty the list.
+     * Cells undone by a rolled-back batch are listed too, and so are open cells whose count expand() changed;
+     * a cell may be listed more than once. After expand() the indexes are in the grown board, so callers
+     * that keep a copy of the board check rowCount() and colCount() first.
+     * O(changes).
+     * @return row-major indexes (row * colCount + col), oldest change first.
+     */
+    public int[] takeChanges(){
+        int[] out = new int[changeCount];
+        for(int i = 0; i < changeCount; ++i){
+            out[i] = index(changes[i]);
+        }
+        changeCount = 0;
+        return out;
+    }
+
+    //******************************************************
+    //*******          Batch move operations         *******
+    //******************************************************
+
+    /**
+     * Apply a batch of moves in order and report the result of each one.
+     * Each move is three ints (op, row, col) in moves, op being OP_CLICK, OP_FLAG or OP_UNFLAG.
+     * A click reports the same value as clickAt(), a flag/un-flag reports 1 on success and -2 otherwise.
+     * The SOLVED status is evaluated once for the whole batch.
+     * If atomic is set and any move is rejected (result -2), every move of the batch is undone
+     * and the game is left exactly as it was before the call.
+     * O(M + cells opened) where M is the number of moves.
+     * @param moves (op, row, col) triples.
+     * @param moveCount number of moves in the batch.
+     * @param results per-move results, at least moveCount long.
+     * @param atomic whether the batch is all-or-nothing.
+     * @return number of moves applied, 0 if an atomic batch was rolled back.
+     */
+    public int applyMoves(int[] moves, int moveCount, int[] results, boolean atomic){
+        if(moves == null || results == null || moveCount < 0 || moveCount > moves.length / 3 || moveCount > results.length){
+            throw new IllegalArgumentException("Invalid batch!");
+        }
+        // Saved so that an atomic batch can be rolled back
+        Status oldStatus = status;
+        int oldClicked = clickedCount;
+        int oldFlagged = flaggedCount;
+        
+        journalSize = 0;
+        journaling = atomic;
+        boolean opened = false;
+        for(int i = 0; i < moveCount; ++i){
+            int row = moves[3*i+1];
+            int col = moves[3*i+2];
+            int ret;
+            switch(moves[3*i]){
+                case OP_CLICK:
+                    ret = meteredClick(row, col); // Metered like flags, even if the batch is rolled back
+                    opened |= ret >= 0;
+                    break;
+                case OP_FLAG:
+                    ret = flagAt(row, col) ? 1 : -2;
+                    break;
+                case OP_UNFLAG:
+                    ret = unFlagAt(row, col) ? 1 : -2;
+                    break;
+                default:
+                    ret = -2; // Unknown opcode
+            }
+            results[i] = ret;
+            if(atomic && ret == -2){ // Reject the whole batch
+                rollback();
+                status = oldStatus;
+                clickedCount = oldClicked;
+                flaggedCount = oldFlagged;
+                journaling = false;
+                return 0;
+            }
+        }
+        journaling = false;
+        if(opened){
+            checkSolved();
+        }
+        if(atomic && status != oldStatus && (status == Status.SOLVED || status == Status.EXPLODED)){
+            EngineMetrics.gameOver(status); // Not recorded while journaling
+        }
+        return moveCount;
+    }
+
+    /**
+     * Append a cell change to the journal if journaling is on, and to the change list if tracking is on.
+     * @param p index of the cell in the padded cells array.
+     * @param kind J_OPEN, J_FLAG or J_UNFLAG.
+     */
+    private void record(int p, int kind){
+        if(tracking){
+            track(p);
+        }
+        if(!journaling){
+            return;
+        }
+        if(journalSize == journal.length){ // Double the journal when it is full
+            int[] bigger = new int[journal.length * 2];
+            System.arraycopy(journal, 0, bigger, 0, journalSize);
+            journal = bigger;
+        }
+        journal[journalSize++] = p * 4 + kind;
+    }
+
+    /**
+     * Append a cell to the change list.
+     * @param p index of the cell in the padded cells array.
+     */
+    private void track(int p){
+        if(changeCount == changes.length){
+            changes = Arrays.copyOf(changes, changeCount * 2);
+        }
+        changes[changeCount++] = p;
+    }
+
+    /**
+     * Undo every journaled cell change, newest first.
+     */
+    private void rollback(){
+        for(int i = journalSize - 1; i >= 0; --i){
+            int p = journal[i] >> 2;
+            Cell cell = cells[p];
+            switch(journal[i] & 3){
+                case J_OPEN:
+                    cell.setInvisible();
+                    Bits.clear(visibleBits, p);
+                    frontierClosed(p);
+                    break;
+                case J_FLAG:
+                    cell.unFlagged();
+                    Bits.clear(flagBits, p);
+                    if(hasOpenNbr(p)){
+                        frontierAdd(p);
+                    }
+                    break;
+                default:
+                    cell.setFlagged();
+                    Bits.set(flagBits, p);
+                    frontierRemove(p);
+            }
+        }
+        journalSize = 0;
+    }
+
+    //******************************************************
+    //*******            Board expansion             *******
+    //******************************************************
+
+    /**
+     * Grow a SQUARE board during play by adding lines of hidden cells at the BOTTOM or RIGHT edge, with
+     * mineCount mines seeded among the new cells. Only the new cells and the old line along the seam are
+     * recounted; open seam cells whose count changes are listed by takeChanges(). Open 0-count cells on the
+     * seam then open their new neighbours as a click would, and hidden new cells next to open cells join the frontier.
+     * New cells go into spare rows or cols of the padded cells array, whose bitsets and frontier are indexed
+     * like it, so old cells keep their indexes. When the spare lines run out the array is laid out again
+     * with as many spare lines as the board has, so the cost is amortized O(added cells + seam), plus the
+     * cells opened. Row-major indexes move when cols are added; changes not yet taken are moved with them.
+     * The opening index is dropped (openingCount() and get3BV() report -1) and the level becomes CUSTOM.
+     * @param edge where the lines go.
+     * @param lines number of rows (BOTTOM) or cols (RIGHT) to add.
+     * @param mineCount mines to place among the new cells.
+     * @param random source of random numbers.
+     * @return false if the board was not grown: invalid counts, another topology, a finished game
+     * or a call made while applyMoves() is running.
+     */
+    public boolean expand(Edge edge, int lines, int mineCount, RandomGenerator random){
+        if(edge == null || random == null){
+            throw new IllegalArgumentException("Null values not accepted!");
+        }
+        boolean addRows = edge == Edge.BOTTOM;
+        int newRows = addRows ? rowCount + lines : rowCount;
+        int newCols = addRows ? colCount : colCount + lines;
+        if(board == null || topology != Topology.SQUARE || status == Status.SOLVED || status == Status.EXPLODED ||
+            journaling || lines <= 0 || mineCount < 0 || mineCount > (long)lines * (addRows ? colCount : rowCount) ||
+            (long)(newRows + 2) * (newCols + 2) > Integer.MAX_VALUE - 8){ // Other topologies may link cells across the board
+            return false;
+        }
+        
+        //new cells at the end of the grid rows, or as new rows at its end: amortized O(1) per cell
+        int rowFrom = addRows ? rowCount : 0;
+        int colFrom = addRows ? 0 : colCount;
+        if(addRows){
+            for(int row = rowFrom; row < newRows; ++row){
+                DynArr310<Cell> cellRow = new DynArr310<>(Math.max(2, newCols));
+                for(int col = 0; col < newCols; ++col){
+                    cellRow.add(new Cell());
+                }
+                board.addRow(row, cellRow);
+            }
+        } else {
+            for(int col = colFrom; col < newCols; ++col){
+                DynArr310<Cell> cellCol = new DynArr310<>(Math.max(2, newRows));
+                for(int row = 0; row < newRows; ++row){
+                    cellCol.add(new Cell());
+                }
+                board.addCol(col, cellCol);
+            }
+        }
+        int rowCapacity = cells.length / stride - 2;
+        if(newRows > rowCapacity){ // Out of spare rows: as many again
+            relayout(spareLines(rowCount, newRows, stride), stride - 2);
+        } else if(newCols + 2 > stride){ // Out of spare cols: as many again
+            relayout(rowCapacity, spareLines(colCount, newCols, rowCapacity + 2));
+        }
+        rowCount = newRows;
+        colCount = newCols;
+        openingId = null; // Openings may now reach into the new cells
+        for(int row = rowFrom; row < newRows; ++row){
+            for(int col = colFrom; col < newCols; ++col){
+                cells[pos(row, col)] = board.get(row, col);
+            }
+        }
+        
+        //seed the new cells
+        for(int placed = 0; placed < mineCount; ){
+            int row = rowFrom + random.nextInt(newRows - rowFrom);
+            int col = colFrom + random.nextInt(newCols - colFrom);
+            Cell cell = cells[pos(row, col)];
+            if(cell.hasMine()){
+                continue;
+            }
+            cell.setMine();
+            Bits.set(mineBits, pos(row, col));
+            placed++;
+        }
+        mineTotalCount += mineCount;
+        level = Level.CUSTOM;
+        
+        //recount the new cells and the old line along the seam
+        int seamRowFrom = Math.max(0, rowFrom - 1);
+        int seamColFrom = Math.max(0, colFrom - 1);
+        for(int row = seamRowFrom; row < rowCount; ++row){
+            for(int col = seamColFrom; col < colCount; ++col){
+                int p = pos(row, col);
+                Cell cell = cells[p];
+                int count = cell.hasMine() ? -1 : countAdjMines(p);
+                if(tracking && cell.visible() && cell.getCount() != count){ // Shown counts that changed
+                    track(p);
+                }
+                cell.setCount(count);
+            }
+        }
+        
+        //new cells next to open cells: join the frontier, or open if the open cell is a 0-count one
+        int opened = clickedCount;
+        for(int row = seamRowFrom; row < rowCount; ++row){
+            for(int col = seamColFrom; col < colCount; ++col){
+                int p = pos(row, col);
+                Cell cell = cells[p];
+                if(!cell.visible() && !cell.isFlagged() && frontierNext[p] < 0 && hasOpenNbr(p)){
+                    frontierAdd(p);
+                }
+            }
+        }
+        for(int row = seamRowFrom; row < rowCount; ++row){
+            for(int col = seamColFrom; col < colCount; ++col){
+                int p = pos(row, col);
+                if(cells[p].visible() && cells[p].getCount() == 0){
+                    openAdjCells(p);
+                }
+            }
+        }
+        if(clickedCount != opened){
+            checkSolved();
+        }
         return true;
     }
 
+    /**
+     * Choose how many rows or cols the cells array gets room for when it runs out: as many again
+     * as the board has, within the array size limit.
+     * @param lines rows or cols of the board before expand().
+     * @param needed rows or cols of the grown board.
+     * @param across padded length of the other dimension.
+     * @return rows or cols to make room for, at least needed.
+     */
+    private static int spareLines(int lines, int needed, int across){
+        return (int)Math.max(needed, Math.min(2L * lines, (Integer.MAX_VALUE - 8) / across - 2));
+    }
+
+    /**
+     * Make room in the padded cells array, its bitsets and the frontier for rowCapacity x colCapacity cells.
+     * More rows only extend the arrays, as every index stays; more cols move each row to the new stride,
+     * and the frontier and pending changes with it. The new room is SENTINEL. O(new array size), with no
+     * per-cell neighbour work.
+     * @param rowCapacity rows to make room for, at least rowCount.
+     * @param colCapacity cols to make room for, at least colCount.
+     */
+    private void relayout(int rowCapacity, int colCapacity){
+        int oldStride = stride;
+        int oldLength = cells.length;
+        stride = colCapacity + 2;
+        int length = (rowCapacity + 2) * stride;
+        if(stride == oldStride){ // Rows only
+            cells = Arrays.copyOf(cells, length);
+            Arrays.fill(cells, oldLength, length, SENTINEL);
+            frontierNext = Arrays.copyOf(frontierNext, length);
+            Arrays.fill(frontierNext, oldLength, length, -1);
+            frontierPrev = Arrays.copyOf(frontierPrev, length);
+            mineBits = Arrays.copyOf(mineBits, Bits.words(length));
+            visibleBits = Arrays.copyOf(visibleBits, Bits.words(length));
+            flagBits = Arrays.copyOf(flagBits, Bits.words(length));
+            return;
+        }
+        squareOffsets();
+        Cell[] oldCells = cells;
+        int[] oldNext = frontierNext;
+        cells = new Cell[length];
+        Arrays.fill(cells, SENTINEL);
+        for(int row = 0; row < rowCount; ++row){
+            System.arraycopy(oldCells, (row + 1) * oldStride + 1, cells, pos(row, 0), colCount);
+        }
+        mineBits = relayout(mineBits, oldStride, length);
+        visibleBits = relayout(visibleBits, oldStride, length);
+        flagBits = relayout(flagBits, oldStride, length);
+        
+        //same frontier order, new indexes
+        frontierNext = new int[length];
+        frontierPrev = new int[length];
+        Arrays.fill(frontierNext, -1);
+        frontierNext[0] = 0;
+        frontierSize = 0;
+        for(int p = oldNext[0]; p != 0; p = oldNext[p]){
+            frontierAdd(p / oldStride * stride + p % oldStride);
+        }
+        for(int i = 0; i < changeCount; ++i){
+            changes[i] = changes[i] / oldStride * stride + changes[i] % oldStride;
+        }
+    }
+
+    /**
+     * Copy a bitset over the padded cells array to a new stride, one row at a time, O(rows + words).
+     * @param bits bitset over the old array.
+     * @param oldStride row length of the old array.
+     * @param length size of the new array.
+     * @return bitset over the new array.
+     */
+    private long[] relayout(long[] bits, int oldStride, int length){
+        long[] out = new long[Bits.words(length)];
+        for(int row = 0; row < rowCount; ++row){
+            Bits.copy(bits, (row + 1) * oldStride + 1, out, pos(row, 0), colCount);
+        }
+        return out;
+    }
+
     //******************************************************
     //*******     BELOW THIS LINE IS TESTING CODE    *******
     //*******      Edit it as much as you'd like!    *******
@@ -737,6 +2100,345 @@ public class MineSweeper{
         //2 | | |1|?|F|
         //3 | | |2|3|3|
         //4 | | |1|?|1|
+
+        //batch moves: an atomic batch with a bad move leaves the board untouched
+        random = new Random(10);
+        game = new MineSweeper(random.nextInt(),Level.TINY);
+        int[] moves = {OP_CLICK,0,0, OP_FLAG,2,3, OP_CLICK,9,9};
+        int[] results = new int[3];
+        if (game.applyMoves(moves, 3, results, true) == 0 && results[2] == -2 &&
+            !game.isVisible(0,0) && !game.isFlagged(2,3) && game.mineLeft() == 3 &&
+            game.getStatus().equals("INIT") && game.applyMoves(moves, 3, results, false) == 3 &&
+            results[0] == 0 && results[1] == 1 && game.isVisible(4,0) && game.mineLeft() == 2){
+            System.out.println("Yay 8");
+        }
+
+        //pluggable random source: java.util.Random keeps the seed-to-board mapping,
+        //and a SplittableRandom with a 64-bit seed is reproducible
+        int seed = new Random(10).nextInt();
+        MineSweeper same = new MineSweeper(new Random(seed), Level.TINY);
+        MineSweeper a = new MineSweeper(new SplittableRandom(1L << 40), Level.HARD);
+        MineSweeper b = new MineSweeper(new SplittableRandom(1L << 40), Level.HARD);
+        boolean sameMines = true;
+        for (int i = 0; i < a.rowCount(); i++)
+            for (int j = 0; j < a.colCount(); j++)
+                sameMines = sameMines && a.hasMine(i,j) == b.hasMine(i,j);
+        if (sameMines && same.countNbrMines(2,3) == -1 && same.countNbrMines(3,3) == 3){
+            System.out.println("Yay 9");
+        }
+
+        //a game created from a cached layout is the same board as a freshly generated one
+        BoardCache cache = new BoardCache(2);
+        MineSweeper cached = cache.newGame(seed, Level.TINY);
+        cache.newGame(seed, Level.TINY);
+        cache.newGame(1, Level.EASY);
+        cache.newGame(2, Level.EASY);
+        if (cached.clickAt(0,0) == 0 && cached.isVisible(4,0) && cached.countNbrMines(2,3) == -1 &&
+            cache.hits() == 1 && cache.misses() == 3 && cache.evictions() == 1 && cache.size() == 2){
+            System.out.println("Yay 10");
+        }
+
+        //the TINY board has one opening and 3BV 4 (the opening plus (3,3), (3,4) and (4,4))
+        game = new MineSweeper(seed, Level.TINY);
+        if (game.openingCount() == 1 && game.get3BV() == 4 && game.clickAt(4,0) == 0 &&
+            game.isVisible(0,4) && game.isVisible(3,2) && !game.isVisible(3,4)){
+            System.out.println("Yay 11");
+        }
+
+        //bitset queries: the three mines, one flag, and the hidden cells after a click
+        game = new MineSweeper(seed, Level.TINY);
+        game.clickAt(0,0);
+        game.flagAt(2,4);
+        if (game.nextMine(0) == 13 && game.nextMine(14) == 14 && game.nextMine(15) == 23 &&
+            game.nextMine(24) == -1 && game.nextFlag(0) == 14 && game.flagCount() == 1 &&
+            game.nextHidden(0) == 13 && game.hiddenCount() == 6 && game.visibleCount() == 19){
+            System.out.println("Yay 12");
+        }
+
+        //frontier in insertion order: hidden (2,3), (3,3), (2,4), (4,3); flagging (2,4) drops it
+        int[] frontier = game.getFrontier();
+        game.unFlagAt(2,4);
+        boolean rejoined = game.isFrontier(2,4) && game.frontierSize() == 4;
+        if (frontier.length == 3 && frontier[0] == 13 && frontier[1] == 18 && frontier[2] == 23 &&
+            rejoined && game.nextFrontier(23) == 14 && !game.isFrontier(0,0)){
+            System.out.println("Yay 13");
+        }
+
+        //a copy plays on independently of the original
+        MineSweeper copy = new MineSweeper(game);
+        copy.clickAt(3,3);
+        if (copy.isVisible(3,3) && !game.isVisible(3,3) && copy.isFlagged(2,4) == game.isFlagged(2,4) &&
+            copy.getStatus().equals(game.getStatus()) && copy.get3BV() == 4 && !copy.isFrontier(3,3) && game.isFrontier(3,3)){
+            System.out.println("Yay 14");
+        }
+
+        //the off-heap engine copy plays the same TINY game, and refuses calls once closed
+        game = new MineSweeper(seed, Level.TINY);
+        OffHeapGame offHeap = new OffHeapGame(seed, Level.TINY);
+        boolean offHeapSame = offHeap.clickAt(0,0) == game.clickAt(0,0) && offHeap.flagAt(2,4) && offHeap.mineLeft() == 2 &&
+            offHeap.isVisible(4,0) && !offHeap.isVisible(3,4) && offHeap.countNbrMines(2,3) == -1 &&
+            offHeap.clickAt(4,3) == -1 && offHeap.isExploded();
+        offHeap.close();
+        try {
+            offHeap.isVisible(0,0);
+            offHeapSame = false;
+        } catch (IllegalStateException e){
+            // Expected: the board was released
+        }
+        if (offHeapSame){
+            System.out.println("Yay 15");
+        }
+
+        //on a 3x3 torus every cell touches the other eight; a 5x5 wrapped window lets counts exceed 8
+        MineSweeper torus = new MineSweeper(seed, Topology.TORUS, 3, 3, 1);
+        int[] window = new int[48];
+        for (int i=0, d=0; d<25; d++){
+            if (d != 12){
+                window[i++] = d / 5 - 2;
+                window[i++] = d % 5 - 2;
+            }
+        }
+        MineSweeper wide = new MineSweeper(seed, Topology.custom("WINDOW", window, true), 5, 5, 24);
+        int safe = 0; // The one cell without a mine
+        while (wide.hasMine(safe / 5, safe % 5)){
+            safe++;
+        }
+        int torusSafe = torus.hasMine(0,0) ? 1 : 0;
+        if (torus.clickAt(0, torusSafe) == 1 && !torus.isVisible(1,1) && torus.getTopology() == Topology.TORUS &&
+            wide.countNbrMines(safe / 5, safe % 5) == 24 && wide.clickAt(safe / 5, safe % 5) == 24 && wide.isSolved()){
+            System.out.println("Yay 16");
+        }
+
+        //a snapshot restores mines, flags and opened cells; a sparse big board stays far below its bitsets
+        MineSweeper saved = new MineSweeper(seed, Level.CUSTOM, 300, 300, 90);
+        saved.clickAt(150, 150);
+        saved.flagAt(saved.nextMine(0) / 300, saved.nextMine(0) % 300);
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        try {
+            BoardCodec.write(saved, snapshot);
+            MineSweeper restored = BoardCodec.readGame(new ByteArrayInputStream(snapshot.toByteArray()));
+            if (Arrays.equals(restored.getVisibleBits(), saved.getVisibleBits()) &&
+                Arrays.equals(restored.getFlagBits(), saved.getFlagBits()) &&
+                Arrays.equals(restored.getMineBits(), saved.getMineBits()) &&
+                restored.getStatus().equals(saved.getStatus()) && restored.mineLeft() == 89 &&
+                snapshot.size() < 300 * 300 / 8 / 4){
+                System.out.println("Yay 17");
+            }
+        } catch (IOException e){
+            // In-memory streams do not fail
+        }
+
+        //a spectator that keeps up applies every delta; one that falls a ring behind jumps to a keyframe
+        MineSweeper broadcast = new MineSweeper(seed, Level.EASY);
+        SpectatorHub hub = new SpectatorHub(broadcast, 4, 4);
+        SpectatorHub.Spectator fast = hub.subscribe();
+        SpectatorHub.Spectator slow = hub.subscribe();
+        SpectatorHub.Mirror fastView = new SpectatorHub.Mirror();
+        SpectatorHub.Mirror slowView = new SpectatorHub.Mirror();
+        slowView.apply(slow.poll());
+        for (int i=0; i<9; i++){
+            hub.flag(i, i);
+            for (byte[] frame = fast.poll(); frame != null; frame = fast.poll()){
+                fastView.apply(frame);
+            }
+        }
+        for (byte[] frame = slow.poll(); frame != null; frame = slow.poll()){
+            slowView.apply(frame);
+        }
+        if (fastView.mineLeft() == 1 && slowView.mineLeft() == 1 && fast.resets() == 0 && slow.resets() == 1 &&
+            (slowView.state(8,8) & GameWorker.FLAGGED) != 0 && (fastView.state(4,4) & GameWorker.FLAGGED) != 0){
+            System.out.println("Yay 18");
+        }
+
+        //three positions with two per shard: a full first shard and a second one cut to its record
+        try {
+            Path dir = Files.createTempDirectory("minesweeper");
+            MineSweeper played = new MineSweeper(seed, Level.TINY);
+            TrainingExporter exporter = new TrainingExporter(dir, "yay", 5, 5, 2);
+            TrainingExporter.Writer writer = exporter.writer();
+            writer.record(played, OP_FLAG, 2, 3);
+            played.flagAt(2, 3);
+            writer.record(played, OP_CLICK, 0, 0);
+            played.clickAt(0, 0);
+            long last = writer.record(played, OP_CLICK, 2, 3);
+            exporter.close();
+            byte[] first = Files.readAllBytes(exporter.shardPath(0));
+            byte[] second = Files.readAllBytes(exporter.shardPath(1));
+            int stride = exporter.stride();
+            if (last == 2 && first.length == TrainingExporter.HEADER_SIZE + 2 * stride && second.length == TrainingExporter.HEADER_SIZE + stride &&
+                first[32] == 2 && second[32] == 1 && first[TrainingExporter.HEADER_SIZE + 5] == 0 &&
+                first[TrainingExporter.HEADER_SIZE + stride + TrainingExporter.RECORD_PREFIX + 13] == TrainingExporter.FLAGGED &&
+                second[TrainingExporter.HEADER_SIZE + TrainingExporter.RECORD_PREFIX] == 0 &&
+                second[TrainingExporter.HEADER_SIZE + TrainingExporter.RECORD_PREFIX + 18] == TrainingExporter.HIDDEN){
+                System.out.println("Yay 19");
+            }
+            Files.delete(exporter.shardPath(0));
+            Files.delete(exporter.shardPath(1));
+            Files.delete(dir);
+        } catch (IOException e){
+            System.out.println("Export failed: " + e.getMessage());
+        }
+
+        //grow a game in play: the opening cascades into two safe rows at the bottom, then a mined col goes right
+        MineSweeper growing = new MineSweeper(seed, Level.TINY);
+        growing.setChangeTracking(true);
+        growing.clickAt(0, 0);
+        boolean grewBottom = growing.expand(Edge.BOTTOM, 2, 0, new Random(1));
+        boolean allOpened = true;
+        for (int cell : growing.takeChanges()){
+            allOpened &= growing.isVisible(cell / growing.colCount(), cell % growing.colCount());
+        }
+        boolean grewRight = growing.expand(Edge.RIGHT, 1, 2, new Random(1));
+        boolean recounted = false;
+        for (int cell : growing.takeChanges()){
+            recounted |= cell == 4; // (0, 4) was an open 0 and now touches a mine
+        }
+        if (grewBottom && grewRight && allOpened && recounted && growing.rowCount() == 7 && growing.colCount() == 6 &&
+            growing.isVisible(6, 0) && growing.isVisible(5, 4) && growing.getCount(0, 4) == 1 &&
+            growing.hasMine(2, 3) && growing.hasMine(2, 4) && growing.hasMine(4, 3) &&
+            growing.mineLeft() == 5 && growing.getCount(5, 4) == growing.countNbrMines(5, 4) &&
+            growing.get3BV() == -1 && growing.getLevel() == Level.CUSTOM &&
+            !growing.expand(Edge.RIGHT, 1, 8, new Random(1))){
+            System.out.println("Yay 20");
+        }
+
+        //a script whose last line has no newline still gets every answer
+        try {
+            ByteArrayOutputStream answers = new ByteArrayOutputStream();
+            MineCLI cli = new MineCLI(new ByteArrayInputStream("new TINY 5\nstatus".getBytes()), answers);
+            if (cli.run() == 2 && answers.toString().equals("new 5 5 3\nstatus INIT 3 0\n")){
+                System.out.println("Yay 21");
+            }
+        } catch (IOException e){
+            // In-memory streams do not fail
+        }
+
+        //a spectator follows a board that grows downwards twice, the second time into spare rows
+        MineSweeper deeper = new MineSweeper(seed, Level.TINY);
+        SpectatorHub grownHub = new SpectatorHub(deeper, 4, 4);
+        SpectatorHub.Spectator watcher = grownHub.subscribe();
+        SpectatorHub.Mirror grownView = new SpectatorHub.Mirror();
+        grownHub.click(0, 0);
+        boolean grew = deeper.expand(Edge.BOTTOM, 1, 1, new Random(2)) && deeper.expand(Edge.BOTTOM, 2, 2, new Random(3));
+        grownHub.publish();
+        grownHub.flag(7, 0);
+        for (byte[] frame = watcher.poll(); frame != null; frame = watcher.poll()){
+            grownView.apply(frame);
+        }
+        boolean mirrored = grew && grownView.rowCount() == 8 && grownView.colCount() == 5 && deeper.getMineBits().length == 1;
+        for (int cell = 0; mirrored && cell < 40; cell++){
+            mirrored = grownView.state(cell / 5, cell % 5) == GameWorker.state(deeper, cell);
+        }
+        if (mirrored && deeper.mineLeft() == 5 && watcher.resets() == 0){
+            System.out.println("Yay 22");
+        }
+
+        //custom boards with too many mines, negative mines or too many cells are refused and the session goes on
+        try {
+            ByteArrayOutputStream answers = new ByteArrayOutputStream();
+            String script = "new CUSTOM 1 2 2 5\nnew CUSTOM 1 3 3 -4\nnew CUSTOM 1 100000 100000 5\nnew CUSTOM 1 2 2 4\nnew CUSTOM 1 2 2 3\nstatus\n";
+            MineCLI cli = new MineCLI(new ByteArrayInputStream(script.getBytes()), answers);
+            if (cli.run() == 6 && answers.toString().equals("error bad arguments\nerror bad arguments\nerror bad arguments\n" +
+                "error bad arguments\nnew 2 2 3\nstatus INIT 3 0\n")){
+                System.out.println("Yay 23");
+            }
+        } catch (IOException e){
+            // In-memory streams do not fail
+        }
+
+        //the engine thread's coalesced updates leave the display as the same moves leave a game played directly
+        MineSweeper reference = new MineSweeper(seed, Level.EASY);
+        int zero = 0;
+        while (reference.hasMine(zero / 9, zero % 9) || reference.getCount(zero / 9, zero % 9) != 0){
+            zero++;
+        }
+        reference.clickAt(zero / 9, zero % 9);
+        int first = reference.nextHidden(0);
+        int second = reference.nextHidden(first + 1);
+        reference.flagAt(first / 9, first % 9);
+        reference.flagAt(second / 9, second % 9);
+        reference.unFlagAt(first / 9, first % 9);
+        int[] expected = new int[81];
+        for (int cell = 0; cell < 81; cell++){
+            expected[cell] = GameWorker.state(reference, cell);
+        }
+        ExecutorService ui = Executors.newSingleThreadExecutor();
+        int[] shown = new int[81]; // Only touched on the ui thread
+        int[] updates = new int[1];
+        GameWorker worker = new GameWorker(ui, update -> {
+            for (int i = 0; i < update.size(); i++){
+                shown[update.cell(i)] = update.state(i);
+            }
+            updates[0]++;
+        });
+        worker.newGame(new MineSweeper(seed, Level.EASY));
+        worker.click(zero / 9, zero % 9);
+        worker.flag(first / 9, first % 9);
+        worker.flag(second / 9, second % 9);
+        worker.unflag(first / 9, first % 9);
+        worker.close();
+        try {
+            boolean applied = false;
+            for (int tries = 0; tries < 500 && !applied; tries++){ // Flushes run on the ui thread, so ask it
+                applied = ui.submit(() -> Arrays.equals(shown, expected) && updates[0] > 0).get();
+                if (!applied){
+                    Thread.sleep(10);
+                }
+            }
+            if (applied && expected[zero] == GameWorker.VISIBLE && (expected[second] & GameWorker.FLAGGED) != 0 && expected[first] == 0){
+                System.out.println("Yay 24");
+            }
+        } catch (InterruptedException | ExecutionException e){
+            System.out.println("Worker check failed: " + e);
+        }
+        ui.shutdown();
+
+        //prefetcher: a new setting drops the queued games, and game n uses the n-th seed of Random(seed)
+        GamePrefetcher prefetcher = new GamePrefetcher(2, 10, Level.TINY);
+        prefetcher.setCustom(50, 60, 100);
+        prefetcher.setLevel(Level.HARD);
+        Random seeds = new Random(10);
+        boolean fresh = true;
+        for (int i = 0; i < 6; i++){
+            MineSweeper taken = prefetcher.take();
+            MineSweeper seeded = new MineSweeper(seeds.nextInt(), Level.HARD);
+            fresh &= taken.getLevel() == Level.HARD && taken.rowCount() == 16 && taken.colCount() == 30
+                && Arrays.equals(taken.getMineBits(), seeded.getMineBits());
+        }
+        prefetcher.close();
+        if (fresh && prefetcher.hits() + prefetcher.misses() == 6){
+            System.out.println("Yay 25");
+        }
+
+        //analyzer: 3BV and openings agree with the game's own, from a layout or from the game
+        BoardAnalyzer analyzer = new BoardAnalyzer(2);
+        boolean agrees = true;
+        for (Level each : new Level[]{Level.TINY, Level.EASY, Level.MEDIUM, Level.HARD}){
+            for (int s = 0; s < 20; s++){
+                MineSweeper generated = new MineSweeper(s, each);
+                BoardStats fromLayout = analyzer.analyze(BoardLayout.generate(s, each), s);
+                BoardStats fromGame = analyzer.analyze(generated);
+                agrees &= fromLayout.get3BV() == generated.get3BV() && fromLayout.openings() == generated.openingCount()
+                    && fromGame.get3BV() == generated.get3BV() && fromGame.openings() == generated.openingCount()
+                    && fromLayout.guesses() == fromLayout.timesStuck() - 1 && fromLayout.guesses() >= 0;
+            }
+        }
+        if (agrees){
+            System.out.println("Yay 26");
+        }
+
+        //metrics: the largest click is reported exactly, not rounded up to its histogram bucket
+        EngineMetrics.get().reset();
+        MineSweeper measured = new MineSweeper(10, Level.MEDIUM);
+        int empty = measured.nextHidden(0);
+        while (measured.hasMine(empty / 16, empty % 16) || measured.getCount(empty / 16, empty % 16) != 0){
+            empty = measured.nextHidden(empty + 1);
+        }
+        measured.clickAt(empty / 16, empty % 16);
+        int openedByClick = 16 * 16 - measured.hiddenCount();
+        if (EngineMetrics.get().getCellsOpenedPerClickMax() == openedByClick && openedByClick > 1){
+            System.out.println("Yay 27");
+        }
     } 
 
 }
\ No newline at end of file
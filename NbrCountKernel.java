@@ -0,0 +1,74 @@
+package com.minesweeper;
+/**
+ * Whole-board neighbour count kernel.
+ * Works on a primitive mine plane: a byte per cell (1 for a mine, 0 otherwise) in the same
+ * padded row-major layout as MineSweeper, so neighbour i of index p is p + offset[i] with
+ * no bounds checks. Each count is the sum of the eight shifted mine planes.
+ * Uses the Vector API (jdk.incubator.vector) when the module is present, scalar code otherwise.
+ */
+public class NbrCountKernel {
+
+	/**
+	 * Whether the Vector API module is available at run time.
+	 */
+	private static final boolean VECTOR = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+	/**
+	 * Minimum row length for which the vector kernel is used.
+	 */
+	private static final int VECTOR_MIN_COLS = 64;
+
+	/**
+	 * No instances.
+	 */
+	private NbrCountKernel(){ }
+
+	/**
+	 * Report whether the vector kernel can be used.
+	 * @return true if jdk.incubator.vector is loaded.
+	 */
+	public static boolean vectorAvailable(){
+		return VECTOR;
+	}
+
+	/**
+	 * Count neighbour mines of every cell in rows [rowFrom, rowTo), O(cells in rows).
+	 * Only the interior (non-border) entries of out are written, the count for a mine cell
+	 * is its number of adjacent mines (callers substitute -1).
+	 * @param mines padded mine plane, (rows + 2) x (cols + 2).
+	 * @param cols number of columns of the board (without border).
+	 * @param out padded output plane, same size as mines.
+	 * @param rowFrom first board row to count.
+	 * @param rowTo one past the last board row to count.
+	 */
+	public static void count(byte[] mines, int cols, byte[] out, int rowFrom, int rowTo){
+		if(VECTOR && cols >= VECTOR_MIN_COLS){
+			VectorNbrCounts.count(mines, cols, out, rowFrom, rowTo);
+		} else {
+			countScalar(mines, cols, out, rowFrom, rowTo);
+		}
+	}
+
+	/**
+	 * Scalar version of count().
+	 * @param mines padded mine plane, (rows + 2) x (cols + 2).
+	 * @param cols number of columns of the board (without border).
+	 * @param out padded output plane, same size as mines.
+	 * @param rowFrom first board row to count.
+	 * @param rowTo one past the last board row to count.
+	 */
+	public static void countScalar(byte[] mines, int cols, byte[] out, int rowFrom, int rowTo){
+		int stride = cols + 2;
+		for(int row = rowFrom; row < rowTo; ++row){
+			int start = (row + 1) * stride + 1;
+			int end = start + cols;
+			for(int p = start; p < end; ++p){
+				int up = p - stride;
+				int down = p + stride;
+				out[p] = (byte)(mines[up - 1] + mines[up] + mines[up + 1]
+					+ mines[p - 1] + mines[p + 1]
+					+ mines[down - 1] + mines[down] + mines[down + 1]);
+			}
+		}
+	}
+}
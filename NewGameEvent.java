@@ -0,0 +1,54 @@
+package com.minesweeper;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+/**
+ * Flight recorder event for constructing a MineSweeper game (empty board plus initBoard()).
+ * Disabled by default, enable it in a JFR settings file or with -XX:StartFlightRecording.
+ */
+@Name("com.minesweeper.NewGame")
+@Label("New Game")
+@Category("MineSweeper")
+@Description("A MineSweeper game was constructed")
+@Enabled(false)
+public class NewGameEvent extends Event {
+
+	/**
+	 * Difficulty level.
+	 */
+	@Label("Level")
+	String level;
+
+	/**
+	 * Number of rows.
+	 */
+	@Label("Rows")
+	int rows;
+
+	/**
+	 * Number of columns.
+	 */
+	@Label("Columns")
+	int cols;
+
+	/**
+	 * Number of mines.
+	 */
+	@Label("Mines")
+	int mines;
+
+	/**
+	 * Seed used for mine placement.
+	 */
+	@Label("Seed")
+	long seed;
+
+	/**
+	 * Random cells drawn to place all mines.
+	 */
+	@Label("Placement Attempts")
+	int attempts;
+}
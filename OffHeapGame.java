@@ -0,0 +1,452 @@
+package com.minesweeper;
+import java.nio.ByteBuffer;
+import java.util.Random;
+/**
+ * A game whose board lives off the Java heap, for very large long-lived games.
+ * Every cell is one packed byte in a direct buffer (count, mine, visible and flag bits), laid out
+ * like MineSweeper's padded cells array with a border of always-visible cells. The heap holds
+ * only this object and the buffer handle, whatever the board size, so big boards add nothing
+ * to old-generation GC work.
+ * Mines are placed exactly like MineSweeper.initBoard(int), and the accessors and moves have
+ * MineSweeper's semantics, so the same seed and moves give the same game.
+ * This is a separate, smaller copy of the engine (no frontier, journal or metrics), not a storage
+ * backend behind MineSweeper's accessors.
+ * close() ends the game; any later call throws IllegalStateException. With jdk.incubator.foreign
+ * present (--add-modules jdk.incubator.foreign) the board's native memory is freed by close() itself,
+ * or by a Cleaner once a game that was never closed is collected; without it the board is a plain
+ * direct buffer, whose memory is only freed once the GC collects it.
+ */
+public class OffHeapGame implements AutoCloseable {
+
+	/**
+	 * Low bits of a cell byte: number of neighbour mines.
+	 */
+	private static final int COUNT = 0x0F;
+	/**
+	 * Cell bit: mine.
+	 */
+	private static final int MINE = 0x10;
+	/**
+	 * Cell bit: opened.
+	 */
+	private static final int VISIBLE = 0x20;
+	/**
+	 * Cell bit: flagged.
+	 */
+	private static final int FLAG = 0x40;
+	/**
+	 * Cell bit: border cell outside the board, always stored with VISIBLE.
+	 */
+	private static final int BORDER = 0x80;
+	/**
+	 * Whether the foreign memory module is available at run time.
+	 */
+	private static final boolean FOREIGN = ModuleLayer.boot().findModule("jdk.incubator.foreign").isPresent();
+
+	/**
+	 * Number of rows.
+	 */
+	private final int rowCount;
+	/**
+	 * Number of columns.
+	 */
+	private final int colCount;
+	/**
+	 * Row length of the padded board (colCount + 2).
+	 */
+	private final int stride;
+	/**
+	 * Number of mines.
+	 */
+	private final int mineTotalCount;
+	/**
+	 * Number of cells opened.
+	 */
+	private int clickedCount;
+	/**
+	 * Number of flags placed.
+	 */
+	private int flaggedCount;
+	/**
+	 * Game status.
+	 */
+	private MineSweeper.Status status = MineSweeper.Status.INIT;
+	/**
+	 * Packed cells of the padded board, null once closed.
+	 */
+	private ByteBuffer cells;
+	/**
+	 * Owner of the board memory when it can be freed explicitly, null otherwise.
+	 */
+	private ForeignCells memory;
+
+	/**
+	 * Create the game of new MineSweeper(seed, level) off heap.
+	 * @param seed for random numbers.
+	 * @param level a pre-defined difficulty level, not CUSTOM.
+	 */
+	public OffHeapGame(int seed, MineSweeper.Level level){
+		this(seed, MineSweeper.levelSize(level));
+	}
+
+	/**
+	 * Create the game of new MineSweeper(seed, CUSTOM, rows, cols, mines) off heap.
+	 * Mines are placed and counted directly in the buffer, with no heap copy of the board.
+	 * @param seed for random numbers.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 */
+	public OffHeapGame(int seed, int rows, int cols, int mines){
+		this(rows, cols, mines);
+		Random random = new Random(seed);
+		for(int placed = 0; placed < mines; ){
+			int p = pos(random.nextInt(rows), random.nextInt(cols));
+			if((cell(p) & MINE) != 0){ // Cell already has a mine: try again
+				continue;
+			}
+			cells.put(p, (byte)(cell(p) | MINE));
+			placed++;
+			for(int dr = -stride; dr <= stride; dr += stride){ // Count it in every neighbour
+				for(int n = p + dr - 1; n <= p + dr + 1; ++n){
+					if(n != p && (cell(n) & BORDER) == 0){
+						cells.put(n, (byte)(cell(n) + 1));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a game off heap from a previously generated layout.
+	 * @param layout the board layout.
+	 */
+	public OffHeapGame(BoardLayout layout){
+		this(layout.rowCount(), layout.colCount(), layout.mineCount());
+		for(int row = 0; row < rowCount; ++row){
+			for(int col = 0; col < colCount; ++col){
+				if(layout.hasMine(row, col)){
+					cells.put(pos(row, col), (byte) MINE);
+				} else {
+					cells.put(pos(row, col), (byte) layout.getCount(row, col));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the game of new MineSweeper(seed, CUSTOM, rows, cols, mines) off heap.
+	 * @param seed for random numbers.
+	 * @param size {rows, cols, mines}.
+	 */
+	private OffHeapGame(int seed, int[] size){
+		this(seed, size[0], size[1], size[2]);
+	}
+
+	/**
+	 * Allocate an empty board: no mines, every cell hidden, border cells visible.
+	 * Arguments are checked before anything is allocated.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param mines number of mines.
+	 */
+	private OffHeapGame(int rows, int cols, int mines){
+		if(rows <= 0 || cols <= 0 || mines < 0 || mines > (long) rows * cols){
+			throw new IllegalArgumentException("Invalid board size!");
+		}
+		long size = (rows + 2L) * (cols + 2L);
+		if(size > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Board too large!");
+		}
+		rowCount = rows;
+		colCount = cols;
+		stride = cols + 2;
+		mineTotalCount = mines;
+		if(FOREIGN){
+			memory = new ForeignCells((int) size);
+			cells = memory.buffer();
+		} else {
+			cells = ByteBuffer.allocateDirect((int) size);
+		}
+		// Zeroed either way: hidden, no mines
+		byte border = (byte)(BORDER | VISIBLE);
+		for(int col = 0; col < stride; ++col){
+			cells.put(col, border);
+			cells.put((rows + 1) * stride + col, border);
+		}
+		for(int row = 1; row <= rows; ++row){
+			cells.put(row * stride, border);
+			cells.put(row * stride + stride - 1, border);
+		}
+	}
+
+	/**
+	 * End the game and free the board: at once with jdk.incubator.foreign, otherwise when the
+	 * GC collects the direct buffer. Idempotent.
+	 */
+	@Override
+	public void close(){
+		cells = null;
+		if(memory != null){
+			memory.close();
+			memory = null;
+		}
+	}
+
+	/**
+	 * Report whether close() frees the board's memory itself rather than leaving it to the GC.
+	 * @return true if jdk.incubator.foreign is present.
+	 */
+	public static boolean freesOnClose(){
+		return FOREIGN;
+	}
+
+	/**
+	 * Report whether the game was closed.
+	 * @return true after close().
+	 */
+	public boolean isClosed(){ return cells == null; }
+
+	/**
+	 * Report the off-heap size of the board.
+	 * @return number of bytes.
+	 */
+	public long sizeInBytes(){ return open().capacity(); }
+
+	/**
+	 * Report number of rows.
+	 * @return number of rows.
+	 */
+	public int rowCount(){ return rowCount; }
+
+	/**
+	 * Report number of cols.
+	 * @return number of cols.
+	 */
+	public int colCount(){ return colCount; }
+
+	/**
+	 * Report how many mines have not been flagged.
+	 * @return number of mines minus number of flags.
+	 */
+	public int mineLeft(){ return mineTotalCount - flaggedCount; }
+
+	/**
+	 * Report current game status.
+	 * @return one of MineSweeper.Status_STRINGS.
+	 */
+	public String getStatus(){ return MineSweeper.Status_STRINGS[status.ordinal()]; }
+
+	/**
+	 * Report whether the game is solved.
+	 * @return true if SOLVED.
+	 */
+	public boolean isSolved(){ return status == MineSweeper.Status.SOLVED; }
+
+	/**
+	 * Report whether a mine was opened.
+	 * @return true if EXPLODED.
+	 */
+	public boolean isExploded(){ return status == MineSweeper.Status.EXPLODED; }
+
+	/**
+	 * Return true if cell at (row,col) is flagged, false otherwise or for an invalid cell.
+	 * @param row row being referenced.
+	 * @param col column being referenced.
+	 * @return boolean value.
+	 */
+	public boolean isFlagged(int row, int col){
+		return isValidCell(row, col) && (cell(pos(row, col)) & FLAG) != 0;
+	}
+
+	/**
+	 * Return true if cell at (row,col) is open, false otherwise or for an invalid cell.
+	 * @param row row being referenced.
+	 * @param col column being referenced.
+	 * @return boolean value.
+	 */
+	public boolean isVisible(int row, int col){
+		return isValidCell(row, col) && (cell(pos(row, col)) & VISIBLE) != 0;
+	}
+
+	/**
+	 * Return true if cell at (row,col) has a mine, false otherwise or for an invalid cell.
+	 * @param row row being referenced.
+	 * @param col column being referenced.
+	 * @return boolean value.
+	 */
+	public boolean hasMine(int row, int col){
+		return isValidCell(row, col) && (cell(pos(row, col)) & MINE) != 0;
+	}
+
+	/**
+	 * Count the mines around cell (row, col).
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return -2 for an invalid cell, -1 for a mine, otherwise the number of neighbour mines.
+	 */
+	public int countNbrMines(int row, int col){
+		if(!isValidCell(row, col)){
+			return -2;
+		}
+		int c = cell(pos(row, col));
+		return (c & MINE) != 0 ? -1 : c & COUNT;
+	}
+
+	/**
+	 * Open cell (row, col), with the same results and status changes as MineSweeper.clickAt().
+	 * A 0-count cell opens its whole region with an explicit stack, O(cells opened).
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return -2 for an invalid, open or flagged cell, -1 for a mine, otherwise the count.
+	 */
+	public int clickAt(int row, int col){
+		if(clickedCount == 0){
+			status = MineSweeper.Status.INGAME;
+		}
+		if(!isValidCell(row, col)){
+			return -2;
+		}
+		int p = pos(row, col);
+		int c = cell(p);
+		if((c & (FLAG | VISIBLE)) != 0){
+			return -2;
+		}
+		openCell(p);
+		if((c & MINE) != 0){
+			status = MineSweeper.Status.EXPLODED;
+			return -1;
+		}
+		if((c & COUNT) == 0){
+			openRegion(p);
+		}
+		if(clickedCount + mineTotalCount == rowCount * colCount){
+			status = MineSweeper.Status.SOLVED;
+		}
+		return c & COUNT;
+	}
+
+	/**
+	 * Flag cell (row, col), like MineSweeper.flagAt().
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return false for an invalid or open cell, true otherwise.
+	 */
+	public boolean flagAt(int row, int col){
+		if(clickedCount == 0){
+			status = MineSweeper.Status.INGAME;
+		}
+		if(!isValidCell(row, col)){
+			return false;
+		}
+		int p = pos(row, col);
+		int c = cell(p);
+		if((c & VISIBLE) != 0){
+			return false;
+		}
+		cells.put(p, (byte)(c | FLAG));
+		flaggedCount++;
+		return true;
+	}
+
+	/**
+	 * Remove the flag from cell (row, col), like MineSweeper.unFlagAt().
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return true if the cell was flagged, false otherwise or for an invalid or open cell.
+	 */
+	public boolean unFlagAt(int row, int col){
+		if(!isValidCell(row, col)){
+			return false;
+		}
+		int p = pos(row, col);
+		int c = cell(p);
+		if((c & (VISIBLE | FLAG)) != FLAG){
+			return false;
+		}
+		cells.put(p, (byte)(c & ~FLAG));
+		flaggedCount--;
+		return true;
+	}
+
+	/**
+	 * Open every cell of the 0-count region around p and the numbered cells bordering it.
+	 * The stack is a short-lived heap array that grows with the region being opened.
+	 * @param p an opened 0-count cell.
+	 */
+	private void openRegion(int p){
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = p;
+		while(size > 0){
+			int q = stack[--size];
+			for(int dr = -stride; dr <= stride; dr += stride){
+				for(int n = q + dr - 1; n <= q + dr + 1; ++n){
+					int c = cell(n);
+					if((c & VISIBLE) != 0){ // Border cells are visible
+						continue;
+					}
+					openCell(n);
+					if((c & COUNT) == 0){
+						if(size == stack.length){
+							int[] bigger = new int[size * 2];
+							System.arraycopy(stack, 0, bigger, 0, size);
+							stack = bigger;
+						}
+						stack[size++] = n;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open a cell and count it as clicked.
+	 * @param p index of the cell in the padded board.
+	 */
+	private void openCell(int p){
+		cells.put(p, (byte)(cell(p) | VISIBLE));
+		clickedCount++;
+	}
+
+	/**
+	 * Read a packed cell.
+	 * @param p index of the cell in the padded board.
+	 * @return the cell byte as 0..255.
+	 */
+	private int cell(int p){
+		return cells.get(p) & 0xFF;
+	}
+
+	/**
+	 * Check that (row, col) is on the board, and that the game is still open.
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return true if the cell is valid.
+	 */
+	private boolean isValidCell(int row, int col){
+		open();
+		return row >= 0 && row < rowCount && col >= 0 && col < colCount;
+	}
+
+	/**
+	 * Return the board buffer of an open game.
+	 * @return the buffer.
+	 */
+	private ByteBuffer open(){
+		if(cells == null){
+			throw new IllegalStateException("Game is closed!");
+		}
+		return cells;
+	}
+
+	/**
+	 * Index of cell (row, col) in the padded board, no bounds checking.
+	 * @param row row of the cell.
+	 * @param col col of the cell.
+	 * @return index into cells.
+	 */
+	private int pos(int row, int col){
+		return (row + 1) * stride + col + 1;
+	}
+}
@@ -0,0 +1,162 @@
+package com.minesweeper;
+import java.util.stream.IntStream;
+/**
+ * Verifies submitted move sequences for a seeded challenge board.
+ * The board is generated once; every submission is replayed on a copy of that initial game,
+ * so no submission pays for mine placement, counting or the opening index.
+ * A submission is an array of (op, row, col) triples as taken by MineSweeper.applyMoves().
+ * It is accepted if every move is legal, no move comes after the game ended, and the game ends SOLVED.
+ * The verifier is read-only after construction and may be shared between threads.
+ */
+public class ReplayVerifier {
+
+	/**
+	 * The initial game every submission starts from, never played on.
+	 */
+	private final MineSweeper initial;
+
+	/**
+	 * Outcome of replaying one submission.
+	 */
+	public static final class Verdict {
+		/**
+		 * Whether the submission solved the board with legal moves only.
+		 */
+		private final boolean accepted;
+		/**
+		 * Game status after the replay.
+		 */
+		private final MineSweeper.Status status;
+		/**
+		 * Number of moves replayed.
+		 */
+		private final int moves;
+		/**
+		 * Index of the first illegal or extra move, -1 if there is none.
+		 */
+		private final int rejectedMove;
+
+		/**
+		 * Constructor.
+		 * @param accepted whether the submission is accepted.
+		 * @param status final game status.
+		 * @param moves number of moves replayed.
+		 * @param rejectedMove index of the first illegal or extra move, -1 if none.
+		 */
+		Verdict(boolean accepted, MineSweeper.Status status, int moves, int rejectedMove){
+			this.accepted = accepted;
+			this.status = status;
+			this.moves = moves;
+			this.rejectedMove = rejectedMove;
+		}
+
+		/**
+		 * Report whether the submission is accepted.
+		 * @return true if it solved the board with legal moves only.
+		 */
+		public boolean accepted(){ return accepted; }
+
+		/**
+		 * Report the game status after the replay.
+		 * @return final status.
+		 */
+		public MineSweeper.Status status(){ return status; }
+
+		/**
+		 * Report the number of moves replayed, the rejected move not included.
+		 * @return move count.
+		 */
+		public int moves(){ return moves; }
+
+		/**
+		 * Report the index of the first illegal move or move after the game ended.
+		 * @return move index, -1 if every move was replayed.
+		 */
+		public int rejectedMove(){ return rejectedMove; }
+
+		/**
+		 * String representation of the verdict.
+		 * @return e.g. "accepted SOLVED after 42 moves".
+		 */
+		@Override
+		public String toString(){
+			return (accepted ? "accepted " : "rejected ") + status + " after " + moves + " moves"
+				+ (rejectedMove >= 0 ? ", bad move " + rejectedMove : "");
+		}
+	}
+
+	/**
+	 * Create a verifier for the daily board of a pre-defined level.
+	 * @param seed seed of the challenge.
+	 * @param level difficulty level.
+	 */
+	public ReplayVerifier(int seed, MineSweeper.Level level){
+		this(BoardLayout.generate(seed, level));
+	}
+
+	/**
+	 * Create a verifier for a board layout.
+	 * @param layout the challenge board.
+	 */
+	public ReplayVerifier(BoardLayout layout){
+		initial = new MineSweeper(layout);
+	}
+
+	/**
+	 * Replay one submission on a fresh copy of the board, O(cells + moves + cells opened).
+	 * Malformed submissions (null, or not made of whole triples) are rejected at move 0.
+	 * @param moves (op, row, col) triples.
+	 * @return the verdict.
+	 */
+	public Verdict verify(int[] moves){
+		if(moves == null || moves.length % 3 != 0){
+			return new Verdict(false, MineSweeper.Status.INIT, 0, 0);
+		}
+		MineSweeper game = new MineSweeper(initial);
+		MineSweeper.Status status = MineSweeper.Status.INIT;
+		int moveCount = moves.length / 3;
+		for(int i = 0; i < moveCount; ++i){
+			if(status == MineSweeper.Status.SOLVED || status == MineSweeper.Status.EXPLODED){ // Moves after the end
+				return new Verdict(false, status, i, i);
+			}
+			int row = moves[3*i+1];
+			int col = moves[3*i+2];
+			boolean legal;
+			switch(moves[3*i]){
+				case MineSweeper.OP_CLICK:
+					legal = game.clickAt(row, col) != -2;
+					break;
+				case MineSweeper.OP_FLAG:
+					legal = game.flagAt(row, col);
+					break;
+				case MineSweeper.OP_UNFLAG:
+					legal = game.unFlagAt(row, col);
+					break;
+				default:
+					legal = false; // Unknown opcode
+			}
+			if(!legal){
+				return new Verdict(false, status, i, i);
+			}
+			if(game.isSolved()){
+				status = MineSweeper.Status.SOLVED;
+			} else if(game.isExploded()){
+				status = MineSweeper.Status.EXPLODED;
+			} else {
+				status = MineSweeper.Status.INGAME;
+			}
+		}
+		return new Verdict(status == MineSweeper.Status.SOLVED, status, moveCount, -1);
+	}
+
+	/**
+	 * Replay many submissions in parallel across cores.
+	 * @param submissions move sequences, see verify().
+	 * @return one verdict per submission, in the same order.
+	 */
+	public Verdict[] verifyAll(int[][] submissions){
+		Verdict[] out = new Verdict[submissions.length];
+		IntStream.range(0, submissions.length).parallel().forEach(i -> out[i] = verify(submissions[i]));
+		return out;
+	}
+}
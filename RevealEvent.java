@@ -0,0 +1,36 @@
+package com.minesweeper;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+/**
+ * Flight recorder event for opening a zero-count region (flood fill).
+ * Disabled by default.
+ */
+@Name("com.minesweeper.Reveal")
+@Label("Region Reveal")
+@Category("MineSweeper")
+@Description("A click on a zero-count cell opened a region")
+@Enabled(false)
+public class RevealEvent extends Event {
+
+	/**
+	 * Row of the clicked cell.
+	 */
+	@Label("Row")
+	int row;
+
+	/**
+	 * Column of the clicked cell.
+	 */
+	@Label("Column")
+	int col;
+
+	/**
+	 * Number of cells opened.
+	 */
+	@Label("Cells Opened")
+	int opened;
+}
@@ -0,0 +1,530 @@
+package com.minesweeper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+/**
+ * Broadcasts one game to any number of local spectators.
+ * Each move is turned into a compact binary delta frame (the changed cells and the status), and
+ * every keyframeInterval frames a keyframe (a BoardCodec snapshot) is taken. Frames go into one
+ * shared ring of capacity slots; every spectator is only a cursor into that ring, so a move costs one
+ * frame and one slot write whatever the number of spectators, and the player never waits for them.
+ * A spectator that falls more than capacity frames behind finds its next frame overwritten and jumps
+ * to the latest keyframe instead. A board grown by MineSweeper.expand() cannot be described by a delta,
+ * so the frame that follows the growth is a keyframe taking up a delta slot.
+ *
+ * The player thread is the only one that may move the game and publish; each Spectator is polled by
+ * one thread. Every frame starts with a type byte, a varint seq, a status byte and a zigzag varint of
+ * mines left. A delta frame goes on with a varint number of cells, then for each cell in index order
+ * a varint gap and a varint state; a keyframe with a BoardCodec snapshot. Mirror decodes both.
+ */
+public class SpectatorHub {
+
+	/**
+	 * Frame type byte of a delta frame.
+	 */
+	public static final int DELTA = 1;
+	/**
+	 * Frame type byte of a keyframe.
+	 */
+	public static final int KEYFRAME = 2;
+
+	/**
+	 * A published frame and its sequence number.
+	 */
+	private static final class Frame {
+		/**
+		 * Sequence number: deltas count from 0, a keyframe has the number of the delta that follows it.
+		 */
+		final long seq;
+		/**
+		 * Encoded frame.
+		 */
+		final byte[] data;
+
+		/**
+		 * Constructor.
+		 * @param seq sequence number.
+		 * @param data encoded frame.
+		 */
+		Frame(long seq, byte[] data){
+			this.seq = seq;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * The broadcast game.
+	 */
+	private final MineSweeper game;
+	/**
+	 * A keyframe is taken after every keyframeInterval delta frames.
+	 */
+	private final int keyframeInterval;
+	/**
+	 * Delta frames, frame seq in slot seq & mask.
+	 */
+	private final Frame[] ring;
+	/**
+	 * Ring capacity minus one.
+	 */
+	private final int mask;
+	/**
+	 * Number of delta frames published; readers may use the slots of frames below it.
+	 */
+	private volatile long head;
+	/**
+	 * Latest keyframe.
+	 */
+	private volatile Frame keyframe;
+	/**
+	 * Frame being encoded, reused.
+	 */
+	private byte[] buf = new byte[64];
+	/**
+	 * Number of bytes in buf.
+	 */
+	private int size;
+	/**
+	 * Status and mines left in the last frame, to skip frames of moves that changed nothing.
+	 */
+	private int lastStatus = -1;
+	/**
+	 * Mines left in the last frame.
+	 */
+	private int lastMineLeft;
+	/**
+	 * Whether the last frame had the game over.
+	 */
+	private boolean wasOver;
+	/**
+	 * Board rows in the last keyframe, to notice a board grown by MineSweeper.expand().
+	 */
+	private int rows;
+	/**
+	 * Board cols in the last keyframe.
+	 */
+	private int cols;
+
+	/**
+	 * Start broadcasting a game. Turns on the game's change tracking and takes the first keyframe.
+	 * @param game a game on the SQUARE topology.
+	 * @param keyframeInterval delta frames between keyframes.
+	 * @param capacity ring slots, a power of two no smaller than keyframeInterval.
+	 */
+	public SpectatorHub(MineSweeper game, int keyframeInterval, int capacity){
+		if(game == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		if(game.getTopology() != Topology.SQUARE){
+			throw new IllegalArgumentException("Only SQUARE boards can be encoded!");
+		}
+		if(keyframeInterval < 1 || Integer.bitCount(capacity) != 1 || capacity < keyframeInterval){
+			throw new IllegalArgumentException("Capacity must be a power of two and hold a keyframe interval!");
+		}
+		this.game = game;
+		this.keyframeInterval = keyframeInterval;
+		ring = new Frame[capacity];
+		mask = capacity - 1;
+		game.setChangeTracking(true);
+		wasOver = game.isSolved() || game.isExploded();
+		takeKeyframe(0);
+	}
+
+	/**
+	 * Click a cell and publish the result.
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return same as MineSweeper.clickAt().
+	 */
+	public int click(int row, int col){
+		int ret = game.clickAt(row, col);
+		publish();
+		return ret;
+	}
+
+	/**
+	 * Flag a cell and publish the result.
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return same as MineSweeper.flagAt().
+	 */
+	public boolean flag(int row, int col){
+		boolean ret = game.flagAt(row, col);
+		publish();
+		return ret;
+	}
+
+	/**
+	 * Un-flag a cell and publish the result.
+	 * @param row row being referenced.
+	 * @param col col being referenced.
+	 * @return same as MineSweeper.unFlagAt().
+	 */
+	public boolean unflag(int row, int col){
+		boolean ret = game.unFlagAt(row, col);
+		publish();
+		return ret;
+	}
+
+	/**
+	 * Publish the changes made to the game since the last frame, e.g. by MineSweeper.applyMoves().
+	 * Does nothing if no cell, status or mine count changed. O(changes log changes), plus a
+	 * snapshot of the board every keyframeInterval frames and after the board has grown.
+	 */
+	public void publish(){
+		int[] changed = game.takeChanges();
+		int status = statusIndex();
+		boolean over = game.isSolved() || game.isExploded();
+		if(game.rowCount() != rows || game.colCount() != cols){ // Grown: mirrors need the new size
+			wasOver = over;
+			long seq = head;
+			takeKeyframe(seq + 1);
+			ring[(int)(seq & mask)] = new Frame(seq, keyframe.data);
+			head = seq + 1;
+			return;
+		}
+		if(over && !wasOver){ // Show every mine at the end
+			int mines = 0;
+			for(int cell = game.nextMine(0); cell >= 0; cell = game.nextMine(cell + 1)){
+				mines++;
+			}
+			int[] all = Arrays.copyOf(changed, changed.length + mines);
+			for(int cell = game.nextMine(0), i = changed.length; cell >= 0; cell = game.nextMine(cell + 1)){
+				all[i++] = cell;
+			}
+			changed = all;
+		}
+		wasOver = over;
+		if(changed.length == 0 && status == lastStatus && game.mineLeft() == lastMineLeft){
+			return;
+		}
+		Arrays.sort(changed);
+		int distinct = 0;
+		for(int i = 0; i < changed.length; ++i){ // Drop repeats, the frame has the final state
+			if(i == 0 || changed[i] != changed[i - 1]){
+				changed[distinct++] = changed[i];
+			}
+		}
+		long seq = head;
+		header(DELTA, seq);
+		varint(distinct);
+		int prev = -1;
+		for(int i = 0; i < distinct; ++i){
+			varint(changed[i] - prev - 1);
+			varint(wire(GameWorker.state(game, changed[i])));
+			prev = changed[i];
+		}
+		ring[(int)(seq & mask)] = new Frame(seq, Arrays.copyOf(buf, size));
+		head = seq + 1; // Publishes the slot
+		if((seq + 1) % keyframeInterval == 0){
+			takeKeyframe(seq + 1);
+		}
+	}
+
+	/**
+	 * Add a spectator. Its first frame is the latest keyframe.
+	 * @return the spectator.
+	 */
+	public Spectator subscribe(){
+		return new Spectator();
+	}
+
+	/**
+	 * Report the number of delta frames published so far.
+	 * @return frame count.
+	 */
+	public long frames(){ return head; }
+
+	/**
+	 * Encode the current board as a keyframe and make it the latest one.
+	 * @param seq number of the delta frame that follows it.
+	 */
+	private void takeKeyframe(long seq){
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		header(KEYFRAME, seq);
+		rows = game.rowCount();
+		cols = game.colCount();
+		out.write(buf, 0, size);
+		try {
+			BoardCodec.write(game, out);
+		} catch(IOException e){
+			throw new UncheckedIOException(e); // In-memory stream: cannot happen
+		}
+		keyframe = new Frame(seq, out.toByteArray());
+	}
+
+	/**
+	 * Start a frame with its type, seq, status and mines left, and remember the last two.
+	 * @param type DELTA or KEYFRAME.
+	 * @param seq sequence number.
+	 */
+	private void header(int type, long seq){
+		size = 0;
+		put(type);
+		varint(seq);
+		int status = statusIndex();
+		put(status);
+		int mineLeft = game.mineLeft();
+		varint((mineLeft << 1) ^ (mineLeft >> 31)); // Zigzag: mines left goes negative with extra flags
+		lastStatus = status;
+		lastMineLeft = mineLeft;
+	}
+
+	/**
+	 * Report the game status as an index into MineSweeper.Status_STRINGS.
+	 * @return status index.
+	 */
+	private int statusIndex(){
+		return Arrays.asList(MineSweeper.Status_STRINGS).indexOf(game.getStatus());
+	}
+
+	/**
+	 * Append a byte to the frame.
+	 * @param b the byte, in the low 8 bits.
+	 */
+	private void put(int b){
+		if(size == buf.length){
+			buf = Arrays.copyOf(buf, size * 2);
+		}
+		buf[size++] = (byte)b;
+	}
+
+	/**
+	 * Append an unsigned varint to the frame.
+	 * @param value non-negative value.
+	 */
+	private void varint(long value){
+		while((value & ~0x7FL) != 0){
+			put((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		put((int)value);
+	}
+
+	/**
+	 * Pack GameWorker state bits for the wire: count << 3 | MINE | FLAGGED | VISIBLE, one byte up to count 15.
+	 * @param state GameWorker state bits.
+	 * @return wire state.
+	 */
+	private static int wire(int state){
+		return (state & GameWorker.COUNT) << 3 | (state >>> 8) & 7;
+	}
+
+	/**
+	 * One spectator: a cursor into the shared ring. Not thread-safe; poll it from one thread.
+	 */
+	public final class Spectator {
+		/**
+		 * Next delta frame to read, -1 before the first keyframe.
+		 */
+		private long cursor = -1;
+		/**
+		 * Delta frames skipped by jumping to keyframes.
+		 */
+		private long skipped;
+		/**
+		 * Number of jumps to a keyframe after falling behind.
+		 */
+		private long resets;
+
+		/**
+		 * Private constructor, use SpectatorHub.subscribe().
+		 */
+		private Spectator(){ }
+
+		/**
+		 * Take the next frame: the latest keyframe first and after falling behind, deltas otherwise. O(1).
+		 * @return the frame, null if the spectator is up to date. Frames are shared: do not modify.
+		 */
+		public byte[] poll(){
+			if(cursor < 0){
+				return jump();
+			}
+			if(cursor >= head){
+				return null;
+			}
+			Frame frame = ring[(int)(cursor & mask)];
+			if(frame.seq != cursor){ // Overwritten: this spectator fell a whole ring behind
+				resets++;
+				return jump();
+			}
+			cursor++;
+			return frame.data;
+		}
+
+		/**
+		 * Report the number of delta frames this spectator missed by jumping to keyframes.
+		 * @return skipped frames.
+		 */
+		public long skipped(){ return skipped; }
+
+		/**
+		 * Report how many times this spectator fell behind and was reset to a keyframe.
+		 * @return reset count.
+		 */
+		public long resets(){ return resets; }
+
+		/**
+		 * Report the number of delta frames behind the player.
+		 * @return lag in frames.
+		 */
+		public long lag(){ return head - Math.max(cursor, 0); }
+
+		/**
+		 * Move to the latest keyframe.
+		 * @return the keyframe.
+		 */
+		private byte[] jump(){
+			Frame key = keyframe;
+			if(cursor >= 0){
+				skipped += key.seq - cursor;
+			}
+			cursor = key.seq;
+			return key.data;
+		}
+	}
+
+	/**
+	 * A spectator's copy of the board, built by applying frames in the order poll() returns them.
+	 * Cell states use the GameWorker bits.
+	 */
+	public static final class Mirror {
+		/**
+		 * Number of rows, 0 before the first keyframe.
+		 */
+		private int rows;
+		/**
+		 * Number of cols.
+		 */
+		private int cols;
+		/**
+		 * State of each cell.
+		 */
+		private int[] states = new int[0];
+		/**
+		 * Game status.
+		 */
+		private String status;
+		/**
+		 * Mines left.
+		 */
+		private int mineLeft;
+		/**
+		 * Sequence number of the next delta frame expected.
+		 */
+		private long next;
+		/**
+		 * Read position in the frame being applied.
+		 */
+		private int pos;
+
+		/**
+		 * Apply a frame.
+		 * @param frame a frame from Spectator.poll().
+		 */
+		public void apply(byte[] frame){
+			if(frame == null || frame.length == 0){
+				throw new IllegalArgumentException("Invalid frame!");
+			}
+			pos = 1;
+			long seq = varint(frame);
+			if(frame[0] == DELTA && (seq != next || rows == 0)){
+				throw new IllegalArgumentException("Frame out of order!");
+			}
+			if(pos >= frame.length || frame[pos] < 0 || frame[pos] >= MineSweeper.Status_STRINGS.length){
+				throw new IllegalArgumentException("Invalid frame!");
+			}
+			status = MineSweeper.Status_STRINGS[frame[pos++]];
+			int zigzag = (int)varint(frame);
+			mineLeft = (zigzag >>> 1) ^ -(zigzag & 1);
+			if(frame[0] == KEYFRAME){
+				applyKeyframe(frame);
+			} else if(frame[0] != DELTA){
+				throw new IllegalArgumentException("Invalid frame!");
+			} else {
+				int cell = -1;
+				for(long n = varint(frame); n > 0; --n){
+					cell += (int)varint(frame) + 1;
+					int wire = (int)varint(frame);
+					states[cell] = (wire >>> 3) | (wire & 7) << 8;
+				}
+			}
+			next = seq + (frame[0] == DELTA ? 1 : 0);
+		}
+
+		/**
+		 * Report number of rows.
+		 * @return number of rows, 0 before the first keyframe.
+		 */
+		public int rowCount(){ return rows; }
+
+		/**
+		 * Report number of cols.
+		 * @return number of cols.
+		 */
+		public int colCount(){ return cols; }
+
+		/**
+		 * Report the state of a cell.
+		 * @param row row being referenced.
+		 * @param col col being referenced.
+		 * @return GameWorker state bits.
+		 */
+		public int state(int row, int col){
+			if(row < 0 || row >= rows || col < 0 || col >= cols){
+				throw new IndexOutOfBoundsException("Invalid cell (" + row + "," + col + ")!");
+			}
+			return states[row * cols + col];
+		}
+
+		/**
+		 * Report the game status.
+		 * @return one of MineSweeper.Status_STRINGS.
+		 */
+		public String status(){ return status; }
+
+		/**
+		 * Report the mines left.
+		 * @return mine count minus flag count.
+		 */
+		public int mineLeft(){ return mineLeft; }
+
+		/**
+		 * Replace the whole board with a keyframe's snapshot.
+		 * @param frame the keyframe, read from pos.
+		 */
+		private void applyKeyframe(byte[] frame){
+			MineSweeper game;
+			try {
+				game = BoardCodec.readGame(new ByteArrayInputStream(frame, pos, frame.length - pos));
+			} catch(IOException e){
+				throw new IllegalArgumentException("Invalid frame!", e);
+			}
+			rows = game.rowCount();
+			cols = game.colCount();
+			states = new int[rows * cols];
+			for(int cell = 0; cell < states.length; ++cell){
+				states[cell] = GameWorker.state(game, cell);
+			}
+		}
+
+		/**
+		 * Read an unsigned varint at pos.
+		 * @param frame the frame.
+		 * @return the value.
+		 */
+		private long varint(byte[] frame){
+			long value = 0;
+			for(int shift = 0; pos < frame.length && shift < 64; shift += 7){
+				int b = frame[pos++];
+				value |= (long)(b & 0x7F) << shift;
+				if(b >= 0){
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("Invalid frame!");
+		}
+	}
+}
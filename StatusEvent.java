@@ -0,0 +1,36 @@
+package com.minesweeper;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+/**
+ * Flight recorder event for a game status transition.
+ * Disabled by default.
+ */
+@Name("com.minesweeper.Status")
+@Label("Status Change")
+@Category("MineSweeper")
+@Description("The game status changed")
+@Enabled(false)
+public class StatusEvent extends Event {
+
+	/**
+	 * Status before the change.
+	 */
+	@Label("From")
+	String from;
+
+	/**
+	 * Status after the change.
+	 */
+	@Label("To")
+	String to;
+
+	/**
+	 * Number of cells opened so far.
+	 */
+	@Label("Cells Opened")
+	int clicked;
+}
@@ -0,0 +1,102 @@
+package com.minesweeper;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+/**
+ * Runs row-stripe work in parallel on the common ForkJoinPool.
+ * The rows are split in halves until stripes reach a minimum height,
+ * and small jobs run directly on the calling thread.
+ */
+public final class Stripes {
+
+	/**
+	 * Boards with at least this many cells are processed in parallel.
+	 */
+	public static final int PARALLEL_CELLS = 1 << 16;
+
+	/**
+	 * Work on one stripe of rows.
+	 */
+	public interface Body {
+		/**
+		 * Process rows [rowFrom, rowTo).
+		 * @param rowFrom first row.
+		 * @param rowTo one past the last row.
+		 */
+		void run(int rowFrom, int rowTo);
+	}
+
+	/**
+	 * Fork/join task for a range of rows.
+	 */
+	private static final class Task extends RecursiveAction {
+		/**
+		 * Serialization id.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * First row.
+		 */
+		private final int rowFrom;
+		/**
+		 * One past the last row.
+		 */
+		private final int rowTo;
+		/**
+		 * Minimum stripe height.
+		 */
+		private final int minRows;
+		/**
+		 * The work.
+		 */
+		private final transient Body body;
+
+		/**
+		 * Constructor.
+		 * @param rowFrom first row.
+		 * @param rowTo one past the last row.
+		 * @param minRows minimum stripe height.
+		 * @param body the work.
+		 */
+		Task(int rowFrom, int rowTo, int minRows, Body body){
+			this.rowFrom = rowFrom;
+			this.rowTo = rowTo;
+			this.minRows = minRows;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute(){
+			if(rowTo - rowFrom <= minRows){
+				body.run(rowFrom, rowTo);
+				return;
+			}
+			int mid = (rowFrom + rowTo) >>> 1;
+			invokeAll(new Task(rowFrom, mid, minRows, body), new Task(mid, rowTo, minRows, body));
+		}
+	}
+
+	/**
+	 * No instances.
+	 */
+	private Stripes(){ }
+
+	/**
+	 * Run body over rows [0, rows) of a rows x cols board, in parallel stripes if the board
+	 * has at least PARALLEL_CELLS cells. Stripes never overlap, so body needs no locking
+	 * as long as it only writes to its own rows.
+	 * @param rows number of rows.
+	 * @param cols number of columns.
+	 * @param body the work.
+	 */
+	public static void run(int rows, int cols, Body body){
+		long cells = (long)rows * cols;
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if(cells < PARALLEL_CELLS || parallelism <= 1 || rows < 2){
+			body.run(0, rows);
+			return;
+		}
+		// About four stripes per worker, for load balancing
+		int minRows = Math.max(1, rows / (parallelism * 4));
+		ForkJoinPool.commonPool().invoke(new Task(0, rows, minRows, body));
+	}
+}
@@ -0,0 +1,227 @@
+package com.minesweeper;
+import java.util.Arrays;
+/**
+ * Neighbourhood of the cells of a board: which cells count towards a cell's number and get opened
+ * around a 0-count cell. A topology is a list of (row, col) deltas, optionally different on odd rows
+ * (hexagonal boards in offset coordinates), that either stop at the board edge or wrap around it.
+ * MineSweeper compiles the topology of a board once into flat CSR arrays, so its neighbour loops
+ * are the same branch-free loop over a list of cell indexes for every topology.
+ */
+public final class Topology {
+
+	/**
+	 * The eight surrounding cells, stopping at the edges: the classic game.
+	 */
+	public static final Topology SQUARE = new Topology("SQUARE", square(), square(), false);
+	/**
+	 * The eight surrounding cells, wrapping around the edges (the board is a torus).
+	 */
+	public static final Topology TORUS = new Topology("TORUS", square(), square(), true);
+	/**
+	 * The six cells around a hexagon, with odd rows shifted half a cell to the right ("odd-r" layout).
+	 */
+	public static final Topology HEX = new Topology("HEX",
+		new int[] {-1,-1, -1,0, 0,-1, 0,1, 1,-1, 1,0},
+		new int[] {-1,0, -1,1, 0,-1, 0,1, 1,0, 1,1}, false);
+	/**
+	 * The eight cells a chess knight can reach.
+	 */
+	public static final Topology KNIGHT = new Topology("KNIGHT",
+		new int[] {-2,-1, -2,1, -1,-2, -1,2, 1,-2, 1,2, 2,-1, 2,1},
+		new int[] {-2,-1, -2,1, -1,-2, -1,2, 1,-2, 1,2, 2,-1, 2,1}, false);
+
+	/**
+	 * Name of the topology.
+	 */
+	private final String name;
+	/**
+	 * (row, col) delta pairs of even rows.
+	 */
+	private final int[] evenDeltas;
+	/**
+	 * (row, col) delta pairs of odd rows.
+	 */
+	private final int[] oddDeltas;
+	/**
+	 * Whether neighbours wrap around the board edges.
+	 */
+	private final boolean wrap;
+
+	/**
+	 * Constructor.
+	 * @param name name of the topology.
+	 * @param evenDeltas (row, col) delta pairs of even rows.
+	 * @param oddDeltas (row, col) delta pairs of odd rows.
+	 * @param wrap whether neighbours wrap around the edges.
+	 */
+	private Topology(String name, int[] evenDeltas, int[] oddDeltas, boolean wrap){
+		this.name = name;
+		this.evenDeltas = evenDeltas;
+		this.oddDeltas = oddDeltas;
+		this.wrap = wrap;
+	}
+
+	/**
+	 * Create a topology with the same neighbourhood on every row.
+	 * @param name name of the topology.
+	 * @param deltas (row, col) delta pairs, e.g. {-1,0, 1,0, 0,-1, 0,1} for the four orthogonal cells.
+	 * @param wrap whether neighbours wrap around the board edges.
+	 * @return the topology.
+	 */
+	public static Topology custom(String name, int[] deltas, boolean wrap){
+		return custom(name, deltas, deltas, wrap);
+	}
+
+	/**
+	 * Create a topology whose odd rows have their own neighbourhood.
+	 * @param name name of the topology.
+	 * @param evenRowDeltas (row, col) delta pairs of even rows.
+	 * @param oddRowDeltas (row, col) delta pairs of odd rows.
+	 * @param wrap whether neighbours wrap around the board edges.
+	 * @return the topology.
+	 */
+	public static Topology custom(String name, int[] evenRowDeltas, int[] oddRowDeltas, boolean wrap){
+		if(name == null || evenRowDeltas == null || oddRowDeltas == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		checkDeltas(evenRowDeltas);
+		checkDeltas(oddRowDeltas);
+		return new Topology(name, evenRowDeltas.clone(), oddRowDeltas.clone(), wrap);
+	}
+
+	/**
+	 * Report the name of the topology.
+	 * @return name.
+	 */
+	public String name(){ return name; }
+
+	/**
+	 * Report whether neighbours wrap around the board edges.
+	 * @return true for wrap-around.
+	 */
+	public boolean wraps(){ return wrap; }
+
+	/**
+	 * Report the largest number of neighbours a cell can have, which bounds its count.
+	 * @return maximum degree.
+	 */
+	public int maxDegree(){ return Math.max(evenDeltas.length, oddDeltas.length) / 2; }
+
+	/**
+	 * List the neighbours of cell (row, col) on a rows x cols board.
+	 * @param row row of the cell.
+	 * @param col col of the cell.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @return row-major indexes (row * cols + col) of the neighbours, without duplicates or the cell itself.
+	 */
+	public int[] neighbours(int row, int col, int rows, int cols){
+		if(row < 0 || row >= rows || col < 0 || col >= cols){
+			throw new IndexOutOfBoundsException("Invalid cell (" + row + "," + col + ")!");
+		}
+		int[] out = new int[maxDegree()];
+		int n = neighbours(row, col, rows, cols, out, 0, cols, 0);
+		return Arrays.copyOf(out, n);
+	}
+
+	/**
+	 * Compile the adjacency of a rows x cols board into CSR form over MineSweeper's padded cells array
+	 * (stride cols + 2, one border row and column on each side). The neighbours of padded cell p are
+	 * cells[start[p]] to cells[start[p + 1] - 1]; border cells have none, O(rows x cols x degree).
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @return {start, cells}.
+	 */
+	int[][] compile(int rows, int cols){
+		int stride = cols + 2;
+		int[] start = new int[(rows + 2) * stride + 1];
+		int[] cells = new int[rows * cols * maxDegree()];
+		int size = 0;
+		for(int row = 0; row < rows; ++row){
+			int p = (row + 1) * stride; // Left border cell, no neighbours
+			start[p + 1] = size;
+			for(int col = 0; col < cols; ++col){
+				p++;
+				size = neighbours(row, col, rows, cols, cells, size, stride, 1);
+				start[p + 1] = size;
+			}
+			start[p + 2] = size; // Right border cell
+		}
+		for(int p = (rows + 1) * stride; p < start.length - 1; ++p){ // Bottom border row
+			start[p + 1] = size;
+		}
+		return new int[][] {start, Arrays.copyOf(cells, size)};
+	}
+
+	/**
+	 * Append the neighbours of cell (row, col) to out, as row * stride + col + pad indexes
+	 * (row-major indexes for stride cols and pad 0, padded ones for stride cols + 2 and pad 1).
+	 * @param row row of the cell.
+	 * @param col col of the cell.
+	 * @param rows number of rows.
+	 * @param cols number of cols.
+	 * @param out output array.
+	 * @param size number of entries already in out.
+	 * @param stride row length of the index.
+	 * @param pad border width of the index.
+	 * @return new number of entries in out.
+	 */
+	private int neighbours(int row, int col, int rows, int cols, int[] out, int size, int stride, int pad){
+		int[] deltas = (row & 1) == 0 ? evenDeltas : oddDeltas;
+		int first = size;
+		for(int i = 0; i < deltas.length; i += 2){
+			int r = row + deltas[i];
+			int c = col + deltas[i + 1];
+			if(wrap){
+				r = Math.floorMod(r, rows);
+				c = Math.floorMod(c, cols);
+			} else if(r < 0 || r >= rows || c < 0 || c >= cols){
+				continue;
+			}
+			if(r == row && c == col){ // Wrapped onto itself on a small board
+				continue;
+			}
+			int n = (r + pad) * stride + c + pad;
+			boolean seen = false;
+			for(int j = first; j < size; ++j){ // Wrapped onto another neighbour
+				seen |= out[j] == n;
+			}
+			if(!seen){
+				out[size++] = n;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Check a list of custom deltas.
+	 * @param deltas (row, col) delta pairs.
+	 */
+	private static void checkDeltas(int[] deltas){
+		if(deltas.length == 0 || deltas.length % 2 != 0){
+			throw new IllegalArgumentException("Deltas must be non-empty (row, col) pairs!");
+		}
+		for(int i = 0; i < deltas.length; i += 2){
+			if(deltas[i] == 0 && deltas[i + 1] == 0){
+				throw new IllegalArgumentException("A cell cannot be its own neighbour!");
+			}
+		}
+	}
+
+	/**
+	 * Deltas of the eight surrounding cells.
+	 * @return (row, col) delta pairs.
+	 */
+	private static int[] square(){
+		return new int[] {-1,-1, -1,0, -1,1, 0,-1, 0,1, 1,-1, 1,0, 1,1};
+	}
+
+	/**
+	 * String representation of the topology.
+	 * @return its name.
+	 */
+	@Override
+	public String toString(){
+		return name;
+	}
+}
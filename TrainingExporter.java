@@ -0,0 +1,368 @@
+package com.minesweeper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+/**
+ * Records self-play positions for training move predictors: the board as the player sees it,
+ * the move chosen and whether the moved-on cell is safe. Records have a fixed stride and go into
+ * memory-mapped shard files of recordsPerShard records each; a new shard is started when one fills up.
+ * Any number of simulator threads can record at once, each through its own Writer: a record slot is
+ * reserved with one atomic increment and filled with a bulk copy, with no per-record objects.
+ *
+ * Shard file (little-endian): a HEADER_SIZE byte header, then the records.
+ * Header: int magic "MSTD", int version, int rows, int cols, int stride, int HEADER_SIZE,
+ * int recordsPerShard, int shard number, long record count, long number of the first record.
+ * Record: int move cell (row * cols + col), byte op (MineSweeper.OP_CLICK, OP_FLAG or OP_UNFLAG),
+ * byte safe (1 if the cell has no mine), two zero bytes, then one byte per cell: its count if
+ * opened, HIDDEN, FLAGGED or OPENED_MINE; zero-padded to a multiple of 8 bytes.
+ */
+public class TrainingExporter implements AutoCloseable {
+
+	/**
+	 * Cell byte: not opened, not flagged.
+	 */
+	public static final byte HIDDEN = -1;
+	/**
+	 * Cell byte: flagged.
+	 */
+	public static final byte FLAGGED = -2;
+	/**
+	 * Cell byte: an opened mine.
+	 */
+	public static final byte OPENED_MINE = -3;
+	/**
+	 * Bytes before the first record of a shard.
+	 */
+	public static final int HEADER_SIZE = 64;
+	/**
+	 * Bytes before the cells of a record.
+	 */
+	public static final int RECORD_PREFIX = 8;
+
+	/**
+	 * "MSTD", first int of a shard.
+	 */
+	private static final int MAGIC = 0x4D535444;
+	/**
+	 * Offset of the record count in the header.
+	 */
+	private static final int COUNT_OFFSET = 32;
+
+	/**
+	 * A mapped shard file.
+	 */
+	private static final class Shard {
+		/**
+		 * Shard number.
+		 */
+		final long number;
+		/**
+		 * The file.
+		 */
+		final Path path;
+		/**
+		 * The mapping of the whole file.
+		 */
+		final MappedByteBuffer buffer;
+		/**
+		 * Records written so far.
+		 */
+		final AtomicInteger done = new AtomicInteger();
+
+		/**
+		 * Constructor.
+		 * @param number shard number.
+		 * @param path the file.
+		 * @param buffer the mapping.
+		 */
+		Shard(long number, Path path, MappedByteBuffer buffer){
+			this.number = number;
+			this.path = path;
+			this.buffer = buffer;
+		}
+	}
+
+	/**
+	 * Directory of the shards.
+	 */
+	private final Path dir;
+	/**
+	 * File name prefix of the shards.
+	 */
+	private final String prefix;
+	/**
+	 * Number of rows of the recorded boards.
+	 */
+	private final int rows;
+	/**
+	 * Number of cols of the recorded boards.
+	 */
+	private final int cols;
+	/**
+	 * Bytes per record.
+	 */
+	private final int stride;
+	/**
+	 * Records per shard.
+	 */
+	private final int recordsPerShard;
+	/**
+	 * Next record number to reserve.
+	 */
+	private final AtomicLong next = new AtomicLong();
+	/**
+	 * Shards mapped and not yet full, by number. Guarded by this.
+	 */
+	private final HashMap<Long, Shard> open = new HashMap<>();
+	/**
+	 * Most recently mapped shard, checked before taking the lock.
+	 */
+	private volatile Shard current;
+	/**
+	 * Set by close().
+	 */
+	private volatile boolean closed;
+	/**
+	 * Records being written; close() waits for them to finish.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * Create an exporter for boards of one size. Shards are named prefix-NNNNN.bin in dir.
+	 * @param dir directory of the shards, must exist.
+	 * @param prefix file name prefix.
+	 * @param rows number of rows of the recorded boards.
+	 * @param cols number of cols of the recorded boards.
+	 * @param recordsPerShard records per shard file.
+	 */
+	public TrainingExporter(Path dir, String prefix, int rows, int cols, int recordsPerShard){
+		if(dir == null || prefix == null){
+			throw new IllegalArgumentException("Null values not accepted!");
+		}
+		if(rows <= 0 || cols <= 0 || recordsPerShard <= 0){
+			throw new IllegalArgumentException("Invalid board size!");
+		}
+		this.dir = dir;
+		this.prefix = prefix;
+		this.rows = rows;
+		this.cols = cols;
+		stride = (RECORD_PREFIX + rows * cols + 7) & ~7;
+		if(HEADER_SIZE + (long)stride * recordsPerShard > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Shards are limited to 2 GB!");
+		}
+		this.recordsPerShard = recordsPerShard;
+	}
+
+	/**
+	 * Create a writer for one simulator thread.
+	 * @return the writer.
+	 */
+	public Writer writer(){
+		return new Writer();
+	}
+
+	/**
+	 * Report the bytes per record.
+	 * @return stride.
+	 */
+	public int stride(){ return stride; }
+
+	/**
+	 * Report the number of records reserved so far.
+	 * @return record count.
+	 */
+	public long records(){ return next.get(); }
+
+	/**
+	 * Report the file of a shard.
+	 * @param number shard number.
+	 * @return the path.
+	 */
+	public Path shardPath(long number){
+		return dir.resolve(String.format("%s-%05d.bin", prefix, number));
+	}
+
+	/**
+	 * Finish the open shards: write their record counts, flush them and cut the last one to its records.
+	 * Safe while writers are recording: records already started are waited for, later ones throw
+	 * IllegalStateException. Idempotent.
+	 * @throws IOException if a shard cannot be flushed or cut.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this){
+			if(closed){
+				return;
+			}
+			closed = true;
+		}
+		while(active.get() != 0){ // Records that saw closed == false; they may need the lock
+			Thread.yield();
+		}
+		synchronized(this){
+			finish();
+		}
+	}
+
+	/**
+	 * Write the counts of the open shards, flush them and cut the last one. Called with the lock held.
+	 * @throws IOException if a shard cannot be flushed or cut.
+	 */
+	private void finish() throws IOException {
+		long total = next.get();
+		for(Shard shard : open.values()){
+			long count = Math.min(recordsPerShard, total - shard.number * recordsPerShard);
+			shard.buffer.putLong(COUNT_OFFSET, count);
+			shard.buffer.force();
+			try(FileChannel channel = FileChannel.open(shard.path, StandardOpenOption.WRITE)){
+				channel.truncate(HEADER_SIZE + count * stride);
+			}
+		}
+		open.clear();
+		current = null;
+	}
+
+	/**
+	 * Find the shard of a record, mapping it on first use.
+	 * @param number shard number.
+	 * @return the shard.
+	 */
+	private Shard shard(long number){
+		Shard shard = current;
+		if(shard != null && shard.number == number){
+			return shard;
+		}
+		synchronized(this){ // Only reached by records close() waits for
+			shard = open.get(number);
+			if(shard == null){
+				shard = map(number);
+				open.put(number, shard);
+			}
+			if(current == null || number > current.number){
+				current = shard;
+			}
+			return shard;
+		}
+	}
+
+	/**
+	 * Create and map a shard file and write its header.
+	 * @param number shard number.
+	 * @return the shard.
+	 */
+	private Shard map(long number){
+		Path path = shardPath(number);
+		MappedByteBuffer buffer;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)){
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long)stride * recordsPerShard);
+		} catch(IOException e){
+			throw new UncheckedIOException(e);
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, 1);
+		buffer.putInt(8, rows);
+		buffer.putInt(12, cols);
+		buffer.putInt(16, stride);
+		buffer.putInt(20, HEADER_SIZE);
+		buffer.putInt(24, recordsPerShard);
+		buffer.putInt(28, (int)number);
+		buffer.putLong(COUNT_OFFSET, 0);
+		buffer.putLong(40, number * recordsPerShard);
+		return new Shard(number, path, buffer);
+	}
+
+	/**
+	 * Mark a record of a shard written; the writer of its last record finishes the shard.
+	 * @param shard the shard.
+	 */
+	private void written(Shard shard){
+		if(shard.done.incrementAndGet() != recordsPerShard){
+			return;
+		}
+		shard.buffer.putLong(COUNT_OFFSET, recordsPerShard);
+		shard.buffer.force();
+		synchronized(this){ // Unmapped once the last reference goes
+			open.remove(shard.number);
+		}
+	}
+
+	/**
+	 * Records positions for one thread. Not thread-safe: give each simulator thread its own.
+	 */
+	public final class Writer {
+		/**
+		 * The record being built.
+		 */
+		private final byte[] record = new byte[stride];
+
+		/**
+		 * Private constructor, use TrainingExporter.writer().
+		 */
+		private Writer(){ }
+
+		/**
+		 * Record a position and the move about to be played on it, O(cells).
+		 * Call before applying the move to the game.
+		 * @param game the game, SQUARE and of the exporter's size.
+		 * @param op MineSweeper.OP_CLICK, OP_FLAG or OP_UNFLAG.
+		 * @param row row of the move.
+		 * @param col col of the move.
+		 * @return record number.
+		 */
+		public long record(MineSweeper game, int op, int row, int col){
+			if(game == null){
+				throw new IllegalArgumentException("Null values not accepted!");
+			}
+			if(game.getTopology() != Topology.SQUARE){
+				throw new IllegalArgumentException("Only SQUARE boards can be exported!");
+			}
+			if(game.rowCount() != rows || game.colCount() != cols){
+				throw new IllegalArgumentException("Board size does not match the exporter!");
+			}
+			if(row < 0 || row >= rows || col < 0 || col >= cols){
+				throw new IndexOutOfBoundsException("Invalid cell (" + row + "," + col + ")!");
+			}
+			int cell = row * cols + col;
+			record[0] = (byte)cell;
+			record[1] = (byte)(cell >>> 8);
+			record[2] = (byte)(cell >>> 16);
+			record[3] = (byte)(cell >>> 24);
+			record[4] = (byte)op;
+			record[5] = (byte)(game.hasMine(row, col) ? 0 : 1);
+			int size = rows * cols;
+			Arrays.fill(record, RECORD_PREFIX, RECORD_PREFIX + size, HIDDEN);
+			long[] visible = game.getVisibleBits();
+			for(int i = Bits.nextSet(visible, 0, size); i >= 0; i = Bits.nextSet(visible, i + 1, size)){
+				int count = game.getCount(i / cols, i % cols);
+				record[RECORD_PREFIX + i] = count < 0 ? OPENED_MINE : (byte)count;
+			}
+			long[] flags = game.getFlagBits();
+			for(int i = Bits.nextSet(flags, 0, size); i >= 0; i = Bits.nextSet(flags, i + 1, size)){
+				record[RECORD_PREFIX + i] = FLAGGED;
+			}
+			active.incrementAndGet(); // Before reading closed, so close() either sees this record or it sees closed
+			try {
+				if(closed){
+					throw new IllegalStateException("Exporter is closed!");
+				}
+				long number = next.getAndIncrement();
+				Shard shard = shard(number / recordsPerShard);
+				shard.buffer.put(HEADER_SIZE + (int)(number % recordsPerShard) * stride, record, 0, stride);
+				written(shard);
+				return number;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+	}
+}
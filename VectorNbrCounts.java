@@ -0,0 +1,58 @@
+package com.minesweeper;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+/**
+ * SIMD neighbour count kernel using the incubating Vector API.
+ * Only loaded by NbrCountKernel when jdk.incubator.vector is present
+ * (compile and run with --add-modules jdk.incubator.vector).
+ */
+final class VectorNbrCounts {
+
+	/**
+	 * Widest byte vector shape supported by the CPU.
+	 */
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+	/**
+	 * No instances.
+	 */
+	private VectorNbrCounts(){ }
+
+	/**
+	 * Vector version of NbrCountKernel.count(), same contract.
+	 * @param mines padded mine plane, (rows + 2) x (cols + 2).
+	 * @param cols number of columns of the board (without border).
+	 * @param out padded output plane, same size as mines.
+	 * @param rowFrom first board row to count.
+	 * @param rowTo one past the last board row to count.
+	 */
+	static void count(byte[] mines, int cols, byte[] out, int rowFrom, int rowTo){
+		int stride = cols + 2;
+		int len = SPECIES.length();
+		int bound = SPECIES.loopBound(cols);
+		for(int row = rowFrom; row < rowTo; ++row){
+			int start = (row + 1) * stride + 1;
+			int p = start;
+			for(; p < start + bound; p += len){ // Whole vectors: add the eight shifted rows
+				int up = p - stride;
+				int down = p + stride;
+				ByteVector.fromArray(SPECIES, mines, up - 1)
+					.add(ByteVector.fromArray(SPECIES, mines, up))
+					.add(ByteVector.fromArray(SPECIES, mines, up + 1))
+					.add(ByteVector.fromArray(SPECIES, mines, p - 1))
+					.add(ByteVector.fromArray(SPECIES, mines, p + 1))
+					.add(ByteVector.fromArray(SPECIES, mines, down - 1))
+					.add(ByteVector.fromArray(SPECIES, mines, down))
+					.add(ByteVector.fromArray(SPECIES, mines, down + 1))
+					.intoArray(out, p);
+			}
+			for(int end = start + cols; p < end; ++p){ // Scalar tail
+				int up = p - stride;
+				int down = p + stride;
+				out[p] = (byte)(mines[up - 1] + mines[up] + mines[up + 1]
+					+ mines[p - 1] + mines[p + 1]
+					+ mines[down - 1] + mines[down] + mines[down + 1]);
+			}
+		}
+	}
+}